@@ -18,26 +18,46 @@
 package pl.fratik.mcs;
 
 import ch.qos.logback.classic.spi.LogbackServiceProvider;
-import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.haproxy.HAProxyMessageDecoder;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.backend.Backend;
+import pl.fratik.mcs.backend.BackendProxy;
+import pl.fratik.mcs.backend.StatusPing;
+import pl.fratik.mcs.backend.WaitingRoom;
+import pl.fratik.mcs.backend.WakeHistory;
 import pl.fratik.mcs.encoders.*;
+import pl.fratik.mcs.encryption.ServerKey;
 import pl.fratik.mcs.players.WhitelistPlayer;
+import pl.fratik.mcs.ratelimit.RateLimiter;
+import pl.fratik.mcs.ratelimit.SessionGuard;
+import pl.fratik.mcs.status.StatusResponses;
+import pl.fratik.mcs.status.StatusSnapshot;
+import pl.fratik.mcs.transport.ProxyProtocolHandler;
+import pl.fratik.mcs.transport.TransportType;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.ServiceLoader;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -45,12 +65,18 @@ import java.util.regex.Pattern;
 
 public class Bootstrap {
     private static final Logger LOGGER = LoggerFactory.getLogger(Bootstrap.class);
-    @Getter private static Channel channel;
+    private static final int BIND_ATTEMPTS = 20;
+    private static final boolean CDS_TRAINING = Boolean.getBoolean("mcs.cdsTraining");
+    private static final long BIND_RETRY_MS = 500;
+    @Getter private static ChannelGroup channels;
     @Getter private static Integer port = null;
-    @Getter private static Whitelist whitelist = null;
+    @Getter private static volatile Whitelist whitelist = null;
+    private static boolean whitelistEnforced = false;
     @Getter private static boolean premium = true;
+    @Getter private static boolean acceptsTransfers = false;
     @Getter private static McsConfig config;
     @Getter private static Backuper backuper;
+    @Getter private static TransportType transport;
 
     public static void main(String[] args) throws InterruptedException, IOException {
         ServiceLoader.load(LogbackServiceProvider.class);
@@ -62,7 +88,6 @@ public class Bootstrap {
             LOGGER.error("Nie udało się odczytać portu!");
             System.exit(1);
         }
-        if (whitelist != null) readWhitelist();
         readConfig();
         String backupString;
         if (config.isBackupsEnabled()) {
@@ -75,50 +100,177 @@ public class Bootstrap {
             backupString += ")";
         } else backupString = "wyłączone";
         LOGGER.info("Odczytano konfigurację: port: {}; whitelista {}; online-mode: {}; backupy: {}", port,
-                whitelist != null ? String.format("włączona (%s osób)", whitelist.size()) : "wyłączona",
+                whitelistEnforced ? "włączona" : "wyłączona",
                 premium ? "włączony" : "wyłączony (!)", backupString);
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        if (config.isProxyMode() && (!Backend.isConfigured() || config.getBackendPort() == port)) {
+            LOGGER.error("Tryb proxy wymaga backendCommand i backendPort innego niż port serwera!");
+            System.exit(1);
+        }
+        try {
+            transport = TransportType.select(config.getTransport());
+        } catch (Exception e) {
+            LOGGER.error("Nie udało się wybrać transportu!", e);
+            System.exit(1);
+            return;
+        }
+        if (config.isProxyProtocol()) {
+            try {
+                ProxyProtocolHandler.configure(config.getProxyProtocolTrusted());
+            } catch (Exception e) {
+                LOGGER.error("Nieprawidłowa lista proxyProtocolTrusted!", e);
+                System.exit(1);
+                return;
+            }
+            LOGGER.info("Protokół PROXY włączony dla: {}", String.join(", ", config.getProxyProtocolTrusted()));
+        }
+        int acceptors = transport.supportsReusePort() ? Math.max(1, config.getAcceptorThreads()) : 1;
+        if (!transport.supportsReusePort() && config.getAcceptorThreads() > 1)
+            LOGGER.warn("Transport {} nie wspiera SO_REUSEPORT, używam jednego akceptora", transport.getName());
+        LOGGER.info("Transport: {} (akceptory: {})", transport.getName(), acceptors);
+        EventLoopGroup bossGroup;
+        EventLoopGroup workerGroup;
+        if (config.isStandby()) {
+            // tryb czuwania: akceptor i połączenia dzielą jedną pętlę, alokator z jedną areną
+            setPropertyIfAbsent("io.netty.allocator.numHeapArenas", "1");
+            setPropertyIfAbsent("io.netty.allocator.numDirectArenas", "1");
+            setPropertyIfAbsent("io.netty.allocator.useCacheForAllThreads", "false");
+            bossGroup = workerGroup = transport.createEventLoopGroup(Math.max(acceptors, config.getStandbyThreads()),
+                    new DefaultThreadFactory("mcs-loop"));
+        } else {
+            bossGroup = transport.createEventLoopGroup(acceptors, new DefaultThreadFactory("mcs-boss"));
+            workerGroup = transport.createEventLoopGroup(0, new DefaultThreadFactory("mcs-worker"));
+        }
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(transport.getServerChannelClass())
                     .childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         public void initChannel(SocketChannel ch) throws Exception {
+                            // za balancerem limit połączeń sprawdzi ProxyProtocolHandler, gdy pozna prawdziwy adres
+                            boolean proxied = config.isProxyProtocol() && ProxyProtocolHandler.isTrusted(ch.remoteAddress());
+                            if (!proxied && !RateLimiter.allow(RateLimiter.Kind.CONNECTION, ch.remoteAddress())) {
+                                // bez pipeline'u i bez logowania – zalewający klient nie może kosztować więcej niż accept()
+                                ch.close();
+                                return;
+                            }
+                            // tryb proxy: działający serwer obsłuży połączenie sam, MCS tylko przekazuje bajty
+                            boolean forward = config.isProxyMode() && Backend.isReady();
+                            if (!forward && !SessionGuard.tryOpen(ch, config.getMaxOpenSessions())) {
+                                LOGGER.debug("!X Zbyt wiele otwartych połączeń, porzucam {}", ch.remoteAddress());
+                                ch.close();
+                                return;
+                            }
+                            if (proxied) {
+                                ch.pipeline().addLast(new HAProxyMessageDecoder());
+                                ch.pipeline().addLast(new ProxyProtocolHandler());
+                            }
+                            if (forward) {
+                                ch.pipeline().addLast(new BackendProxy());
+                                return;
+                            }
                             ch.pipeline().addLast(new LegacyPingDecoder());
-                            ch.pipeline().addLast(new MinecraftFrameDecoder(), new HandshakeMinecraftPacketDecoder());
-                            ch.pipeline().addLast("length", new LengthEncoder());
+                            ch.pipeline().addLast("frame", new MinecraftFrameDecoder());
+                            ch.pipeline().addLast(new HandshakeMinecraftPacketDecoder());
                             ch.pipeline().addLast("MPE", new MinecraftPacketEncoder());
                             ch.pipeline().addLast(new Main());
                         }
                     })
                     .option(ChannelOption.SO_BACKLOG, 128)
                     .childOption(ChannelOption.SO_KEEPALIVE, true);
+            transport.applyOptions(b, config);
 
-            LOGGER.debug("Startuję nasłuch...");
-            ChannelFuture f = b.bind(port).sync();
-            LOGGER.info("Gotowy na połączenia!");
-            if (config.isBackupsEnabled()) {
-                try {
-                    backuper = new Backuper();
-                } catch (IllegalArgumentException ex) {
-                    LOGGER.error("Nie udało się uaktywnić backupów!", ex);
+            channels = new DefaultChannelGroup("mcs-listeners", GlobalEventExecutor.INSTANCE);
+            while (true) {
+                // whitelista przed bind() – pusta lista odrzucałaby graczy jako spoza whitelisty;
+                // to mały lokalny plik, a mogła się zmienić, gdy działał serwer
+                if (whitelistEnforced) readWhitelist();
+                LOGGER.debug("Startuję nasłuch...");
+                // port jak najszybciej – wszystko, co da się zrobić później, dzieje się po bind()
+                bind(b, port, acceptors, channels);
+                LOGGER.info("Gotowy na połączenia! ({})", ProcessStats.describe());
+                ServerKey.generateInBackground();
+                // plugin zapisał stan przy wyłączaniu, a historia wybudzeń mogła się zmienić
+                readStatusSnapshot();
+                if (CDS_TRAINING) {
+                    train();
+                    channels.close().sync();
                 }
+                if (config.isBackupsEnabled() && !CDS_TRAINING) {
+                    try {
+                        backuper = new Backuper();
+                    } catch (IllegalArgumentException ex) {
+                        LOGGER.error("Nie udało się uaktywnić backupów!", ex);
+                    }
+                }
+                channels.newCloseFuture().sync();
+                LOGGER.info("Nasłuch zakończony!");
+                // świat zaraz będzie w użyciu przez serwer
+                if (backuper != null && !backuper.shutdown()) System.exit(1);
+                backuper = null;
+                // gracze w poczekalni zostają połączeni, dopóki serwer nie wstanie; MCS czeka na wyłączenie serwera
+                if (!WaitingRoom.runBackend()) break;
+                LOGGER.info("Serwer wyłączony, wracam na port {}", port);
             }
-            channel = f.channel();
-            channel.closeFuture().sync();
-            LOGGER.info("Nasłuch zakończony!");
         } finally {
             workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
-            if (!backuper.shutdown()) System.exit(1);
+            if (bossGroup != workerGroup) bossGroup.shutdownGracefully();
+            if (backuper != null && !backuper.shutdown()) System.exit(1);
+        }
+    }
+
+    /**
+     * Przebieg treningowy dla archiwum AppCDS ({@code ./gradlew appCds}): status przez własny nasłuch i klucz RSA,
+     * żeby klasy tych ścieżek trafiły do archiwum.
+     */
+    private static void train() {
+        ServerKey.get();
+        InetSocketAddress local = (InetSocketAddress) channels.iterator().next().localAddress();
+        try {
+            StatusPing.ping(new InetSocketAddress("127.0.0.1", local.getPort()), 2000, () -> {});
+        } catch (IOException e) {
+            LOGGER.warn("Trening AppCDS: status nie odpowiedział", e);
         }
     }
 
+    /**
+     * Otwiera nasłuch; po wyłączeniu serwera port może być jeszcze przez chwilę zajęty, więc ponawia przez kilka sekund.
+     */
+    static void bind(ServerBootstrap b, int port, int acceptors, ChannelGroup channels) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // przy SO_REUSEPORT każdy bind dostaje własny socket, jądro rozkłada połączenia między akceptory
+                for (int i = 0; i < acceptors; i++) channels.add(b.bind(port).sync().channel());
+                return;
+            } catch (Exception e) {
+                channels.close().sync();
+                if (attempt == BIND_ATTEMPTS || !isAddressInUse(e)) throw e;
+                LOGGER.warn("Port {} jest zajęty, próbuję ponownie...", port);
+                Thread.sleep(BIND_RETRY_MS);
+            }
+        }
+    }
+
+    /**
+     * NIO zgłasza zajęty port jako {@link BindException}, a epoll jako {@code Errors.NativeIoException}
+     * z komunikatem z {@code strerror()} – sprawdzamy oba, w całym łańcuchu przyczyn.
+     */
+    static boolean isAddressInUse(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof BindException) return true;
+            if (t instanceof IOException && t.getMessage() != null && t.getMessage().contains("Address already in use"))
+                return true;
+        }
+        return false;
+    }
+
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
+    }
+
     private static void readServerProperties() {
-        try (FileReader fr = new FileReader("./server.properties")) {
-            String props = CharStreams.toString(fr);
+        try {
+            String props = Files.readString(Path.of("./server.properties"));
             Pattern p = Pattern.compile("server-port=(\\d{1,5})");
             Matcher m = p.matcher(props);
             if (m.find()) {
@@ -127,9 +279,10 @@ public class Bootstrap {
                 } catch (Exception ignored) {}
             }
             if (props.contains("online-mode=false")) premium = false;
-            if (props.contains("enforce-whitelist=true")) whitelist = (premium ? new PremiumWhitelist() : new NonPremiumWhitelist());
+            if (props.contains("accepts-transfers=true")) acceptsTransfers = true;
+            if (props.contains("enforce-whitelist=true")) whitelistEnforced = true;
             LOGGER.debug("Odczytano server.properties");
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             LOGGER.error("Plik server.properties nie istnieje", e);
             System.exit(1);
         } catch (Exception e) {
@@ -139,10 +292,14 @@ public class Bootstrap {
     }
 
     private static void readWhitelist() {
+        // nowa instancja za każdym razem – whitelista mogła się zmienić, gdy działał serwer
+        Whitelist wl = premium ? new PremiumWhitelist() : new NonPremiumWhitelist();
         try (FileReader fr = new FileReader("./whitelist.json")) {
             for (JsonElement el : new Gson().fromJson(fr, JsonArray.class))
-                whitelist.add(new WhitelistPlayer(el.getAsJsonObject().get("name").getAsString(),
+                wl.add(new WhitelistPlayer(el.getAsJsonObject().get("name").getAsString(),
                         UUID.fromString(el.getAsJsonObject().get("uuid").getAsString())));
+            whitelist = wl;
+            LOGGER.info("Wczytano whitelistę ({} osób)", wl.size());
         } catch (FileNotFoundException e) {
             LOGGER.error("Plik whitelist.json nie istnieje", e);
             System.exit(1);
@@ -152,6 +309,25 @@ public class Bootstrap {
         }
     }
 
+    private static void readStatusSnapshot() {
+        int startupSeconds = WakeHistory.get().averageSeconds();
+        StatusSnapshot snapshot = null;
+        if (config.isStatusSnapshot() && new File(StatusSnapshot.FILE).exists()) {
+            try {
+                snapshot = StatusSnapshot.read();
+                LOGGER.debug("Odczytano stan serwera z {}", StatusSnapshot.FILE);
+            } catch (Exception e) {
+                LOGGER.warn("Nie udało się odczytać stanu serwera, używam domyślnego statusu", e);
+            }
+        }
+        if (snapshot == null) {
+            if (startupSeconds < 0) return;
+            snapshot = new StatusSnapshot();
+            snapshot.setMaxPlayers(1);
+        }
+        StatusResponses.updateStatus(snapshot.toStatusJson(startupSeconds));
+    }
+
     private static void readConfig() throws IOException {
         try (FileReader fr = new FileReader("./mcs-config.json")) {
             config = new Gson().fromJson(fr, McsConfig.class);
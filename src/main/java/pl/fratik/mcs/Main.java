@@ -17,48 +17,64 @@
 
 package pl.fratik.mcs;
 
-import com.google.common.primitives.Longs;
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.Timeout;
+import lombok.Data;
 import lombok.Getter;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.auth.SessionClient;
+import pl.fratik.mcs.backend.WaitingRoom;
 import pl.fratik.mcs.chat.ChatComponent;
 import pl.fratik.mcs.chat.TextChatComponent;
 import pl.fratik.mcs.chat.TranslateChatComponent;
 import pl.fratik.mcs.encoders.HandshakeMinecraftPacketDecoder;
+import pl.fratik.mcs.encoders.MinecraftFrameDecoder;
 import pl.fratik.mcs.encoders.MinecraftPacketDecoder;
+import pl.fratik.mcs.encoders.MinecraftPacketEncoder;
 import pl.fratik.mcs.encoders.protocol.ProtocolDecoderRegistry;
+import pl.fratik.mcs.encryption.CryptoPool;
+import pl.fratik.mcs.encryption.Decryptor;
 import pl.fratik.mcs.encryption.EncryptionUtils;
 import pl.fratik.mcs.encryption.Encryptor;
 import pl.fratik.mcs.encryption.IdentifiedKey;
+import pl.fratik.mcs.encryption.JceStreamCipher;
+import pl.fratik.mcs.encryption.ServerKey;
 import pl.fratik.mcs.packets.*;
 import pl.fratik.mcs.players.NonPremiumPlayer;
 import pl.fratik.mcs.players.PremiumPlayer;
+import pl.fratik.mcs.ratelimit.RateLimiter;
+import pl.fratik.mcs.ratelimit.SessionGuard;
+import pl.fratik.mcs.status.StatusResponses;
+import pl.fratik.mcs.transport.ClientAddress;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.io.Reader;
 import java.net.InetSocketAddress;
-import java.net.URLEncoder;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.KeyPair;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static pl.fratik.mcs.encryption.EncryptionUtils.generateServerId;
 
 public class Main extends ChannelInboundHandlerAdapter {
     private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
-    private static final KeyPair SERVER_KEY = EncryptionUtils.createRsaKeyPair(1024);
+    private static final ChatComponent INCOMPATIBLE = new TranslateChatComponent("multiplayer.disconnect.incompatible",
+            new ChatComponent[]{new TextChatComponent("1.12.2-1.21.1")}, "Niezgodny klient! Użyj: 1.12.2-1.21.1", 735);
+    private static final ChatComponent TOO_MANY_LOGINS = new TextChatComponent("Zbyt wiele osób loguje się naraz, spróbuj ponownie za chwilę.");
+    private static final ChatComponent UNVERIFIED = new TranslateChatComponent("multiplayer.disconnect.unverified_username", null, null, -1);
+    private static final ChatComponent NOT_WHITELISTED = new TranslateChatComponent("multiplayer.disconnect.not_whitelisted", null, "Nie jesteś na białej liście tego serwera!", 393);
+    private static final ChatComponent CRITICAL_BACKUP = new TextChatComponent("Krytyczny backup w toku, poczekaj chwilę i spróbuj ponownie!");
     @Getter private State state;
     @Getter private int protVer;
     private byte[] verifyToken;
@@ -66,31 +82,47 @@ public class Main extends ChannelInboundHandlerAdapter {
     private UUID uuid;
     private IdentifiedKey key;
     private byte[] sharedSecret;
+    private Timeout deadline;
+    private String host;
+    private int port;
 
     @Override
     public void channelRead(@NotNull ChannelHandlerContext ctx, @NotNull Object msg) throws Exception {
         if (state == null) {
+            if (!RateLimiter.allow(msg instanceof HandshakePacket hmsg && hmsg.getState() == 2
+                    ? RateLimiter.Kind.LOGIN : RateLimiter.Kind.STATUS, ClientAddress.of(ctx.channel()))) {
+                LOGGER.debug("<! Limit zapytań przekroczony przez {}", getIp(ctx.channel()));
+                ctx.close();
+                return;
+            }
             if (msg instanceof LegacyPingPacket) {
                 LOGGER.debug("<-> LegacyPing");
-                ctx.writeAndFlush(new LegacyDisconnectPacket("\u00A71\000127\000Offline\000Serwer jest offline\0000\0000")).addListener(ChannelFutureListener.CLOSE);
+                ctx.writeAndFlush(StatusResponses.legacyPing()).addListener(ChannelFutureListener.CLOSE);
                 return;
             }
             if (msg instanceof LegacyHandshakePacket) {
                 LOGGER.debug("<-> LegacyHandshake");
-                ctx.writeAndFlush(new LegacyDisconnectPacket("Jestes na prehistorycznej wersji Minecrafta. Czemu?")).addListener(ChannelFutureListener.CLOSE);
+                ctx.writeAndFlush(StatusResponses.legacyHandshake()).addListener(ChannelFutureListener.CLOSE);
                 return;
             }
             if (!(msg instanceof HandshakePacket)) throw new IllegalStateException();
             LOGGER.debug("-> Handshake: {}", msg);
             switch (((HandshakePacket) msg).getState()) {
-                case 1 -> state = State.STATUS;
+                case 1 -> {
+                    state = State.STATUS;
+                    deadline(ctx, Bootstrap.getConfig().getStatusTimeoutMs(), "status");
+                    MinecraftFrameDecoder.setMaxFrameSize(ctx.pipeline(), MinecraftFrameDecoder.MAX_STATUS_FRAME);
+                }
                 case 2 -> {
                     state = State.LOGIN;
+                    deadline(ctx, Bootstrap.getConfig().getLoginTimeoutMs(), "logowanie");
+                    MinecraftFrameDecoder.setMaxFrameSize(ctx.pipeline(), MinecraftFrameDecoder.MAX_LOGIN_FRAME);
                     protVer = ((HandshakePacket) msg).getProtVer();
+                    host = transferHost(((HandshakePacket) msg).getIp());
+                    port = ((HandshakePacket) msg).getPort();
+                    ctx.channel().attr(MinecraftPacketEncoder.PROTOCOL_VERSION).set(protVer);
                     if (!ProtocolDecoderRegistry.hasDecoderForVersion(protVer)) {
-                        ctx.writeAndFlush(new DisconnectPacket(new TranslateChatComponent("multiplayer.disconnect.incompatible",
-                                new ChatComponent[]{new TextChatComponent("1.12.2-1.21.1")}, "Niezgodny klient! Użyj: 1.12.2-1.21.1", 735),
-                                protVer)).addListener(ChannelFutureListener.CLOSE);
+                        ctx.writeAndFlush(DisconnectCache.get(INCOMPATIBLE, protVer)).addListener(ChannelFutureListener.CLOSE);
                         LOGGER.debug("<- Nieprawidłowa wersja: {}", protVer);
                     }
                 }
@@ -103,12 +135,10 @@ public class Main extends ChannelInboundHandlerAdapter {
             case STATUS -> {
                 if (msg instanceof StatusRequestPacket) {
                     LOGGER.debug("<- Status");
-                    ctx.writeAndFlush(new StatusResponsePacket("{\"version\":{\"name\":\"Offline\",\"protocol\":-1}," +
-                            "\"players\":{\"max\":1,\"online\":0},\"description\":{\"text\":\"Serwer jest offline\"}}"));
+                    ctx.writeAndFlush(StatusResponses.status());
                 } else if (msg instanceof PingRequestPacket pmsg) {
                     LOGGER.debug("<-> Ping");
-                    ctx.writeAndFlush(new PingResponsePacket(pmsg.getVal()));
-                    ctx.close();
+                    ctx.writeAndFlush(StatusResponses.pong(ctx.alloc(), pmsg.getVal())).addListener(ChannelFutureListener.CLOSE);
                 } else throw new IllegalStateException();
             }
             case LOGIN -> {
@@ -117,6 +147,11 @@ public class Main extends ChannelInboundHandlerAdapter {
                     name = lmsg.getName();
                     uuid = lmsg.getUuid();
                     key = lmsg.getIdentifiedKey();
+                    Whitelist whitelist = Bootstrap.getWhitelist();
+                    if (whitelist != null && Bootstrap.isPremium() && !whitelist.mayContain(name, uuid)) {
+                        notWhitelisted(ctx);
+                        return;
+                    }
                     if (!Bootstrap.isPremium()) {
                         verified(ctx);
                         return;
@@ -125,51 +160,106 @@ public class Main extends ChannelInboundHandlerAdapter {
                     ThreadLocalRandom.current().nextBytes(arr);
                     verifyToken = arr;
                     LOGGER.debug("<- EncryptionRequestPacket{}", key != null ? " (z kluczem)" : "");
-                    ctx.writeAndFlush(new EncryptionRequestPacket(SERVER_KEY.getPublic().getEncoded(), arr));
+                    ctx.writeAndFlush(new EncryptionRequestPacket(ServerKey.get().getPublic().getEncoded(), arr));
                     state = State.ENCRYPTION_REQUESTED;
+                    deadline(ctx, Bootstrap.getConfig().getEncryptionTimeoutMs(), "odpowiedź szyfrowania");
                 } else throw new IllegalStateException();
             }
             case ENCRYPTION_REQUESTED -> {
                 if (msg instanceof EncryptionResponsePacket emsg) {
                     LOGGER.debug("-> EncryptionResponsePacket");
-                    sharedSecret = EncryptionUtils.decryptRsa(SERVER_KEY, emsg.getSharedSecret());
-                    ctx.pipeline().addBefore("length", "encrypt", new Encryptor(new SecretKeySpec(sharedSecret, "AES")));
-                    try {
-                        if (key == null) {
-                            if (!Arrays.equals(verifyToken, EncryptionUtils.decryptRsa(SERVER_KEY, emsg.getVerifyToken())))
-                                throw new SecurityException();
-                        } else {
-                            if (!key.verifyDataSignature(emsg.getVerifyToken(), verifyToken, Longs.toByteArray(emsg.getSalt())))
-                                throw new SecurityException();
-                        }
-                        try (Response resp = new OkHttpClient().newCall(new Request.Builder().url("https://sessionserver.mojang.com/session/minecraft/hasJoined?username=" +
-                                URLEncoder.encode(name, StandardCharsets.UTF_8) + "&serverId=" + generateServerId(sharedSecret, SERVER_KEY.getPublic())).build()).execute()) {
-                            if (resp.code() != 200) throw new IllegalStateException();
-                            try (Reader r = resp.body().charStream()) {
-                                String rawUuid = new Gson().fromJson(r, JsonObject.class).getAsJsonPrimitive("id").getAsString();
-                                UUID decodedUUID = UUID.fromString(rawUuid.substring(0, 8) + '-' + rawUuid.substring(8, 12) + '-' +
-                                            rawUuid.substring(12, 16) + '-' + rawUuid.substring(16, 20) + '-' + rawUuid.substring(20));
-                                if (key != null) {
-                                    if (!key.internalAddHolder(decodedUUID)) throw new IllegalStateException("invalid UUID");
-                                } else {
-                                    if (uuid != null) {
-                                        if (!decodedUUID.equals(uuid)) throw new IllegalStateException("invalid UUID");
-                                    } else {
-                                        uuid = decodedUUID;
-                                    }
-                                }
-                            }
-                        }
-                        state = State.ENCRYPTED;
-                    } catch (Exception e) {
-                        LOGGER.error("<- Weryfikacja nieudana", e);
-                        ctx.writeAndFlush(new DisconnectPacket(new TranslateChatComponent("multiplayer.disconnect.unverified_username", null, null, -1), protVer)).addListener(ChannelFutureListener.CLOSE);
+                    CompletableFuture<LoginSecrets> secrets = CryptoPool.get().trySubmit(() -> decryptResponse(emsg));
+                    if (secrets == null) {
+                        LOGGER.warn("<- Zbyt wiele logowań naraz, odrzucam {}", name);
+                        ctx.writeAndFlush(DisconnectCache.get(TOO_MANY_LOGINS, protVer)).addListener(ChannelFutureListener.CLOSE);
                         return;
                     }
-                    verified(ctx);
+                    state = State.AUTHENTICATING;
+                    // dalej pilnują nas limity CryptoPool i SessionClient
+                    deadline(ctx, 0, null);
+                    // nie czytamy dalej, dopóki RSA i sessionserver nie skończą
+                    ctx.channel().config().setAutoRead(false);
+                    secrets.whenComplete((s, t) -> ctx.executor().execute(() -> decrypted(ctx, s, t)));
+                }
+            }
+            case AUTHENTICATING -> LOGGER.debug("-> {} w trakcie weryfikacji, ignoruję", msg.getClass().getSimpleName());
+            case JOINING -> {
+                if (!(msg instanceof LoginAcknowledgedPacket)) throw new IllegalStateException();
+                LOGGER.debug("-> LoginAcknowledged, {} czeka na serwer", name);
+                state = State.WAITING_ROOM;
+                MinecraftFrameDecoder.setMaxFrameSize(ctx.pipeline(), MinecraftFrameDecoder.MAX_CONFIGURATION_FRAME);
+                // poczekalnia ma własny limit czasu, a zweryfikowany gracz nie zajmuje miejsca w maxOpenSessions
+                deadline(ctx, 0, null);
+                SessionGuard.release(ctx.channel());
+                WaitingRoom.join(ctx.channel(), host, port);
+            }
+        }
+    }
+
+    private LoginSecrets decryptResponse(EncryptionResponsePacket emsg) throws GeneralSecurityException {
+        byte[] secret = EncryptionUtils.decryptRsa(ServerKey.get(), emsg.getSharedSecret());
+        boolean valid;
+        if (key == null) valid = Arrays.equals(verifyToken, EncryptionUtils.decryptRsa(ServerKey.get(), emsg.getVerifyToken()));
+        else valid = key.verifyDataSignature(emsg.getVerifyToken(), verifyToken, ByteBuffer.allocate(Long.BYTES).putLong(emsg.getSalt()).array())
+                // podpis samego klucza (SHA1withRSA) też tutaj; zgodność UUID z sessionserverem sprawdzi authenticated()
+                && (uuid == null || key.internalAddHolder(uuid));
+        return new LoginSecrets(secret, valid);
+    }
+
+    /**
+     * Klient bez UUID w LoginStart: podpis klucza da się sprawdzić dopiero z UUID z sessionservera – też w CryptoPool.
+     */
+    private CompletableFuture<UUID> verifyKeyHolder(UUID decodedUUID) {
+        if (key == null || key.getSignatureHolder() != null) return CompletableFuture.completedFuture(decodedUUID);
+        CompletableFuture<Boolean> valid = CryptoPool.get().trySubmit(() -> key.internalAddHolder(decodedUUID));
+        if (valid == null) return CompletableFuture.failedFuture(new RejectedExecutionException("Zbyt wiele logowań naraz"));
+        return valid.thenApply(v -> decodedUUID);
+    }
+
+    private void decrypted(@NotNull ChannelHandlerContext ctx, LoginSecrets secrets, Throwable error) {
+        if (!ctx.channel().isActive()) return;
+        try {
+            if (error != null) throw error;
+            sharedSecret = secrets.getSharedSecret();
+            SecretKeySpec aesKey = new SecretKeySpec(sharedSecret, "AES");
+            ctx.pipeline().addBefore("frame", "decrypt", new Decryptor(new JceStreamCipher(aesKey, false)));
+            ctx.pipeline().addBefore("MPE", "encrypt", new Encryptor(new JceStreamCipher(aesKey, true)));
+            if (!secrets.isValid()) throw new SecurityException();
+        } catch (Throwable e) {
+            unverified(ctx, e);
+            return;
+        }
+        SessionClient.get().hasJoined(name, generateServerId(sharedSecret, ServerKey.get().getPublic()))
+                .thenCompose(this::verifyKeyHolder)
+                .whenComplete((decodedUUID, t) -> ctx.executor().execute(() -> authenticated(ctx, decodedUUID, t)));
+    }
+
+    private void authenticated(@NotNull ChannelHandlerContext ctx, UUID decodedUUID, Throwable error) {
+        if (!ctx.channel().isActive()) return;
+        ctx.channel().config().setAutoRead(true);
+        try {
+            if (error != null) throw error;
+            if (key != null) {
+                // holder jest ustawiany tylko przy poprawnym podpisie (w CryptoPool), tu już bez RSA
+                if (!decodedUUID.equals(key.getSignatureHolder())) throw new IllegalStateException("invalid UUID");
+            } else {
+                if (uuid != null) {
+                    if (!decodedUUID.equals(uuid)) throw new IllegalStateException("invalid UUID");
+                } else {
+                    uuid = decodedUUID;
                 }
             }
+            state = State.ENCRYPTED;
+        } catch (Throwable e) {
+            unverified(ctx, e);
+            return;
         }
+        verified(ctx);
+    }
+
+    private void unverified(@NotNull ChannelHandlerContext ctx, Throwable e) {
+        LOGGER.error("<- Weryfikacja nieudana", e);
+        ctx.writeAndFlush(DisconnectCache.get(UNVERIFIED, protVer)).addListener(ChannelFutureListener.CLOSE);
     }
 
     private void verified(@NotNull ChannelHandlerContext ctx) {
@@ -177,23 +267,42 @@ public class Main extends ChannelInboundHandlerAdapter {
         if (Bootstrap.getWhitelist() != null) whitelisted = Bootstrap.isPremium() ? isWhitelisted(uuid) : isWhitelisted(name);
         else whitelisted = true;
         if (!whitelisted) {
-            LOGGER.warn("<- {} ({}): Nie na whiteliście", name, uuid);
-            ctx.writeAndFlush(new DisconnectPacket(new TranslateChatComponent("multiplayer.disconnect.not_whitelisted", null, "Nie jesteś na białej liście tego serwera!", 393), protVer)).addListener(ChannelFutureListener.CLOSE);
+            notWhitelisted(ctx);
             return;
         }
         Backuper backuper = Bootstrap.getBackuper();
         if (backuper != null && backuper.isCriticalBackupInProgress()) {
             LOGGER.info("<- Krytyczny backup w toku, poczekaj");
-            ctx.writeAndFlush(new DisconnectPacket(new TextChatComponent("Krytyczny backup w toku, poczekaj chwilę i spróbuj ponownie!"), protVer)).addListener(ChannelFutureListener.CLOSE);
+            ctx.writeAndFlush(DisconnectCache.get(CRITICAL_BACKUP, protVer)).addListener(ChannelFutureListener.CLOSE);
+        } else if (WaitingRoom.accepts(protVer)) {
+            LOGGER.info("<- Uruchamiam serwer, {} czeka w poczekalni", name);
+            WaitingRoom.start();
+            UUID profileId = uuid != null ? uuid : UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+            ctx.writeAndFlush(new LoginSuccessPacket(profileId, name));
+            state = State.JOINING;
+            deadline(ctx, Bootstrap.getConfig().getLoginTimeoutMs(), "potwierdzenie logowania");
         } else {
-            LOGGER.info("<- Uruchamiam serwer");
-            ctx.writeAndFlush(new DisconnectPacket(new TextChatComponent("Uruchamiam serwer."), protVer)).addListener(ChannelFutureListener.CLOSE)
-                    .addListener((ChannelFutureListener) f -> closeServer());
+            int seconds = WaitingRoom.secondsUntilReady();
+            LOGGER.info("<- Uruchamiam serwer (gotowy za ok. {} s)", seconds);
+            ChatComponent starting = new TextChatComponent("Uruchamiam serwer, spróbuj ponownie za ok. " + seconds + " s.");
+            ctx.writeAndFlush(new DisconnectPacket(starting, protVer)).addListener(ChannelFutureListener.CLOSE)
+                    .addListener((ChannelFutureListener) f -> WaitingRoom.start());
         }
     }
 
+    private void notWhitelisted(@NotNull ChannelHandlerContext ctx) {
+        LOGGER.warn("<- {} ({}): Nie na whiteliście", name, uuid);
+        ctx.writeAndFlush(DisconnectCache.get(NOT_WHITELISTED, protVer)).addListener(ChannelFutureListener.CLOSE);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof DecoderException) {
+            // śmieci w sieci są normalne, nie ma sensu logować stack trace'a
+            LOGGER.warn("!X Nieprawidłowe dane od {}: {}", getIp(ctx.channel()), cause.getMessage());
+            ctx.close();
+            return;
+        }
         LOGGER.error("!X Wykryto błąd w połączeniu z {}", getIp(ctx.channel()), cause);
         ctx.close();
     }
@@ -201,23 +310,40 @@ public class Main extends ChannelInboundHandlerAdapter {
     @Override
     public void channelActive(@NotNull ChannelHandlerContext ctx) throws Exception {
         LOGGER.info("!> Połączenie przychodzące od {}", getIp(ctx.channel()));
+        deadline(ctx, Bootstrap.getConfig().getHandshakeTimeoutMs(), "handshake");
     }
 
     @Override
     public void channelInactive(@NotNull ChannelHandlerContext ctx) throws Exception {
         LOGGER.info("<! Rozłączono z {}", getIp(ctx.channel()));
+        deadline(ctx, 0, null);
     }
 
     private static String getIp(@NotNull Channel chan) {
-        if (chan.remoteAddress() instanceof InetSocketAddress address) {
+        SocketAddress remote = ClientAddress.of(chan);
+        if (remote instanceof InetSocketAddress address) {
             return address.getAddress().getHostAddress() + ":" + address.getPort();
         } else {
-            return chan.remoteAddress().toString();
+            return String.valueOf(remote);
         }
     }
 
-    private void closeServer() {
-        Bootstrap.getChannel().close();
+    /**
+     * Ustawia termin na bieżący etap, anulując poprzedni.
+     *
+     * @param millis czas na etap, 0 = tylko anuluj
+     */
+    private void deadline(@NotNull ChannelHandlerContext ctx, int millis, String phase) {
+        if (deadline != null) deadline.cancel();
+        deadline = millis > 0 ? SessionGuard.deadline(ctx.channel(), millis, phase) : null;
+    }
+
+    /**
+     * Adres z handshake'a bez dopisków modloaderów (Forge dokleja {@code \0FML\0} itp.).
+     */
+    private static String transferHost(String address) {
+        int nul = address.indexOf('\0');
+        return nul == -1 ? address : address.substring(0, nul);
     }
 
     private boolean isWhitelisted(UUID uuid) {
@@ -228,10 +354,19 @@ public class Main extends ChannelInboundHandlerAdapter {
         return Bootstrap.getWhitelist() == null || Bootstrap.getWhitelist().contains(new NonPremiumPlayer(nick, null));
     }
 
+    @Data
+    private static class LoginSecrets {
+        private final byte[] sharedSecret;
+        private final boolean valid;
+    }
+
     public enum State {
         STATUS,
         LOGIN,
         ENCRYPTION_REQUESTED,
-        ENCRYPTED
+        AUTHENTICATING,
+        ENCRYPTED,
+        JOINING,
+        WAITING_ROOM
     }
 }
@@ -29,4 +29,37 @@ public class McsConfig {
     private String backupDirectory = "./backups/";
     private int backupRetention = 3; // in days
     @NotNull private List<String> backupInclude = new ArrayList<>(List.of("./world", "./world_nether", "./world_the_end")); // directories to backup
+    private String transport = "auto"; // auto / epoll / nio
+    private int acceptorThreads = 1; // >1 = SO_REUSEPORT, tylko epoll
+    private int tcpDeferAccept = 5; // in seconds, 0 = disabled, tylko epoll
+    private int tcpFastOpen = 0; // queue length, 0 = disabled, tylko epoll
+    private boolean standby = false; // jedna, mała pętla zdarzeń dla akceptora i połączeń
+    private int standbyThreads = 1;
+    private String sessionServerUrl = "https://sessionserver.mojang.com";
+    private int sessionTimeoutMs = 5000;
+    private int sessionMaxConcurrent = 8;
+    private int sessionHedgeDelayMs = 0; // 0 = disabled
+    private int cryptoThreads = 1;
+    private int cryptoMaxPending = 16; // logowania ponad limit są od razu rozłączane
+    private boolean statusSnapshot = true; // pokazuj ikonę/MOTD/wersję zapisane przez plugin
+    private boolean rateLimit = true; // nadmiarowe połączenia są zamykane bez odpowiedzi
+    private int rateLimitConnections = 30; // na minutę z jednego IP
+    private int rateLimitStatus = 20; // na minutę z jednego IP
+    private int rateLimitLogins = 5; // na minutę z jednego IP
+    private int rateLimitSubnetFactor = 4; // limit dla podsieci (/24, /48) = limit dla IP * factor
+    private int rateLimitTableSize = 4096; // ile adresów pamiętamy naraz
+    private int maxOpenSessions = 256; // połączenia, które jeszcze nie skończyły statusu/logowania; 0 = bez limitu
+                                       // (gracze w poczekalni się nie liczą – przechodzą tam dopiero po weryfikacji)
+    private int handshakeTimeoutMs = 5000; // 0 = bez limitu czasu (dotyczy wszystkich *TimeoutMs)
+    private int statusTimeoutMs = 5000;
+    private int loginTimeoutMs = 5000;
+    private int encryptionTimeoutMs = 15000; // klient w tym czasie łączy się z sessionserverem
+    private boolean proxyProtocol = false; // nagłówek PROXY v1/v2 od load balancera
+    @NotNull private List<String> proxyProtocolTrusted = new ArrayList<>(List.of("127.0.0.1", "::1")); // adresy/podsieci balancerów
+    @NotNull private List<String> backendCommand = new ArrayList<>(); // np. ["java", "-jar", "paper.jar", "nogui"]; pusta = serwer uruchamia skrypt po wyjściu MCS'a
+    private int startupEstimateSeconds = 60; // ile zwykle trwa start serwera, dopóki nie ma historii wybudzeń (mcs-wakes.json)
+    private int waitingRoomTimeoutSeconds = 180; // poza limitem maxOpenSessions, patrz wyżej
+    private boolean proxyMode = false; // MCS zostaje na porcie i przekazuje połączenia do serwera na backendPort
+    private int backendPort = 25566; // serwer musi na nim słuchać, np. backendCommand z "--port", "25566"
+    private int proxyIdleMinutes = 0; // tryb proxy: wyłącz serwer po tylu minutach bez połączeń; 0 = zostaw to pluginowi
 }
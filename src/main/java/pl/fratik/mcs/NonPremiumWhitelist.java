@@ -17,20 +17,27 @@
 
 package pl.fratik.mcs;
 
+import org.jetbrains.annotations.Nullable;
 import pl.fratik.mcs.players.Player;
 import pl.fratik.mcs.players.WhitelistPlayer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
 
 public class NonPremiumWhitelist implements Whitelist {
-    private final List<String> storage = new ArrayList<>();
+    private final Set<String> storage = new HashSet<>();
 
     @Override
     public boolean contains(Player identifier) {
         return storage.contains(identifier.getNick());
     }
 
+    @Override
+    public boolean mayContain(String nick, @Nullable UUID uuid) {
+        return storage.contains(nick);
+    }
+
     @Override
     public void add(WhitelistPlayer identifier) {
         storage.add(identifier.getNick());
@@ -17,34 +17,49 @@
 
 package pl.fratik.mcs;
 
+import org.jetbrains.annotations.Nullable;
 import pl.fratik.mcs.players.Player;
 import pl.fratik.mcs.players.WhitelistPlayer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 
 public class PremiumWhitelist implements Whitelist {
-    private final List<UUID> storage = new ArrayList<>();
+    private final Set<UUID> storage = new HashSet<>();
+    private final Set<String> nicks = new HashSet<>();
 
     @Override
     public boolean contains(Player identifier) {
         return storage.contains(identifier.getUuid());
     }
 
+    @Override
+    public boolean mayContain(String nick, @Nullable UUID uuid) {
+        // bez UUID od klienta (przed 1.19) zostaje nick z whitelist.json; fałszywie odrzucony może być tylko gracz,
+        // który zmienił nick, a jego wpis ma jeszcze stary – wejdzie klientem 1.19+ (wysyła UUID)
+        // albo po ponownym dodaniu do whitelisty
+        if (uuid == null) return nick != null && nicks.contains(nick.toLowerCase(Locale.ROOT));
+        return storage.contains(uuid) || nick != null && nicks.contains(nick.toLowerCase(Locale.ROOT));
+    }
+
     @Override
     public void add(WhitelistPlayer identifier) {
         storage.add(identifier.getUuid());
+        if (identifier.getNick() != null) nicks.add(identifier.getNick().toLowerCase(Locale.ROOT));
     }
 
     @Override
     public boolean remove(WhitelistPlayer identifier) {
+        if (identifier.getNick() != null) nicks.remove(identifier.getNick().toLowerCase(Locale.ROOT));
         return storage.remove(identifier.getUuid());
     }
 
     @Override
     public void clear() {
         storage.clear();
+        nicks.clear();
     }
 
     @Override
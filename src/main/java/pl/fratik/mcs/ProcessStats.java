@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ProcessStats {
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    private ProcessStats() {}
+
+    public static int threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * @return RSS procesu w kB, albo -1 jeśli nie da się go odczytać (system inny niż Linux)
+     */
+    public static long rssKb() {
+        try {
+            List<String> lines = Files.readAllLines(PROC_STATUS);
+            for (String line : lines) {
+                if (!line.startsWith("VmRSS:")) continue;
+                return Long.parseLong(line.substring(6).replace("kB", "").trim());
+            }
+        } catch (IOException | NumberFormatException | UnsupportedOperationException ignored) {
+            // brak /proc
+        }
+        return -1;
+    }
+
+    public static String describe() {
+        long rss = rssKb();
+        Runtime rt = Runtime.getRuntime();
+        long heapMb = (rt.totalMemory() - rt.freeMemory()) / 1024 / 1024;
+        return String.format("wątki: %d; RSS: %s; heap: %d MB / %d MB", threadCount(),
+                rss == -1 ? "?" : (rss / 1024) + " MB", heapMb, rt.maxMemory() / 1024 / 1024);
+    }
+}
@@ -18,125 +18,140 @@
 package pl.fratik.mcs;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.ByteProcessor;
 
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
-import java.util.function.*;
 
 public class ProtocolUtil {
-    private ProtocolUtil() {}
-
-    public static Integer getVarInt(ByteBuf buf) {
-        return readVarInt0(index -> {
-            if (buf.readableBytes() < index) return null;
-            return buf.getByte(index);
-        });
-    }
-
-    public static Integer readVarInt(ByteBuf buf) {
-        int index = buf.readerIndex();
-        Integer res = readVarInt0(i -> buf.readByte());
-        if (res == null) buf.readerIndex(index);
-        return res;
-    }
-
-    public static Integer readVarInt0(IntFunction<Byte> readByte) {
-        int i = 0;
-        int value = 0;
-        int position = 0;
-        Byte currentByte;
-
-        while (true) {
-            currentByte = readByte.apply(i);
-            if (currentByte == null) return null;
-            value |= (currentByte & 0x7F) << position;
-
-            if ((currentByte & 0x80) == 0) break;
+    public static final int MAX_VARINT_SIZE = 5;
+    public static final int MAX_VARLONG_SIZE = 10;
+    public static final int DEFAULT_MAX_STRING_LENGTH = 32767;
+    // kontynuuj, dopóki bajt ma ustawiony bit kontynuacji
+    private static final ByteProcessor VARINT_CONTINUATION = value -> (value & 0x80) != 0;
 
-            position += 7;
+    private ProtocolUtil() {}
 
-            if (position >= 32) throw new RuntimeException("VarInt is too big");
+    /**
+     * Sprawdza, czy na pozycji readerIndex jest kompletny VarInt – bez czytania go.
+     *
+     * @return ilość bajtów VarInta, albo 0 jeśli dane jeszcze nie doszły
+     * @throws CorruptedFrameException jeśli VarInt jest dłuższy niż 5 bajtów
+     */
+    public static int varIntSize(ByteBuf buf) {
+        int readable = buf.readableBytes();
+        if (readable == 0) return 0;
+        int start = buf.readerIndex();
+        // najczęstszy przypadek: jednobajtowy
+        if ((buf.getByte(start) & 0x80) == 0) return 1;
+        int end = buf.forEachByte(start, Math.min(readable, MAX_VARINT_SIZE), VARINT_CONTINUATION);
+        if (end == -1) {
+            if (readable >= MAX_VARINT_SIZE) throw new CorruptedFrameException("VarInt is too big");
+            return 0;
         }
-
-        return value;
-    }
-    public static Long getVarLong(ByteBuf buf) {
-        return readVarLong0(index -> {
-            if (buf.readableBytes() < index) return null;
-            return buf.getByte(index);
-        });
+        return end - start + 1;
     }
 
-    public static Long readVarLong(ByteBuf buf) {
-        int index = buf.readerIndex();
-        Long res = readVarLong0(i -> buf.readByte());
-        if (res == null) buf.readerIndex(index);
-        return res;
+    public static int readVarInt(ByteBuf buf) {
+        byte b = buf.readByte();
+        if ((b & 0x80) == 0) return b;
+        int value = b & 0x7F;
+        b = buf.readByte();
+        if ((b & 0x80) == 0) return value | (b << 7);
+        value |= (b & 0x7F) << 7;
+        for (int position = 14; position < 35; position += 7) {
+            b = buf.readByte();
+            value |= (b & 0x7F) << position;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new CorruptedFrameException("VarInt is too big");
     }
 
-    public static Long readVarLong0(IntFunction<Byte> readByte) {
-        int i = 0;
+    public static long readVarLong(ByteBuf buf) {
         long value = 0;
-        int position = 0;
-        Byte currentByte;
-
-        while (true) {
-            currentByte = readByte.apply(i);
-            if (currentByte == null) return null;
-            value |= (long) (currentByte & 0x7F) << position;
-
-            if ((currentByte & 0x80) == 0) break;
-
-            position += 7;
-
-            if (position >= 64) throw new RuntimeException("VarLong is too big");
+        for (int position = 0; position < 70; position += 7) {
+            byte b = buf.readByte();
+            value |= (long) (b & 0x7F) << position;
+            if ((b & 0x80) == 0) return value;
         }
+        throw new CorruptedFrameException("VarLong is too big");
+    }
 
-        return value;
+    /**
+     * @return ilość bajtów potrzebna do zapisania wartości jako VarInt
+     */
+    public static int varIntBytes(int value) {
+        if ((value & 0xFFFFFF80) == 0) return 1;
+        if ((value & 0xFFFFC000) == 0) return 2;
+        if ((value & 0xFFE00000) == 0) return 3;
+        if ((value & 0xF0000000) == 0) return 4;
+        return 5;
     }
+
     public static void writeVarInt(ByteBuf buf, int value) {
-        while (true) {
-            if ((value & ~0x7F) == 0) {
-                buf.writeByte(value);
-                return;
+        if ((value & ~0x7F) == 0) {
+            buf.writeByte(value);
+        } else if ((value & ~0x3FFF) == 0) {
+            buf.writeShort(((value & 0x7F) | 0x80) << 8 | (value >>> 7));
+        } else {
+            while ((value & ~0x7F) != 0) {
+                buf.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
             }
-
-            buf.writeByte((value & 0x7F) | 0x80);
-
-            value >>>= 7;
+            buf.writeByte(value);
         }
     }
-    public static void writeVarLong(ByteBuf buf, long value) {
-        while (true) {
-            if ((value & ~((long) 0x7F)) == 0) {
-                buf.writeByte((int) value);
-                return;
-            }
 
+    public static void writeVarLong(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
             buf.writeByte((int) ((value & 0x7F) | 0x80));
-
             value >>>= 7;
         }
+        buf.writeByte((int) value);
     }
 
     public static String readString(ByteBuf buf) {
-        int index = buf.readerIndex();
-        Integer length = readVarInt(buf);
-        if (length == null) return null;
-        if (buf.readableBytes() < length) {
-            buf.readerIndex(index);
-            return null;
-        }
-        return String.valueOf(buf.readCharSequence(length, StandardCharsets.UTF_8));
+        return readString(buf, DEFAULT_MAX_STRING_LENGTH);
+    }
+
+    /**
+     * @param maxLength maksymalna długość w znakach (jak w protokole), bajtów UTF-8 może być do 3x więcej
+     */
+    public static String readString(ByteBuf buf, int maxLength) {
+        int length = readVarInt(buf);
+        if (length < 0 || length > maxLength * 3)
+            throw new CorruptedFrameException("String length " + length + " exceeds " + maxLength * 3 + " bytes");
+        if (buf.readableBytes() < length)
+            throw new CorruptedFrameException("String length " + length + " exceeds readable bytes");
+        String s = buf.toString(buf.readerIndex(), length, StandardCharsets.UTF_8);
+        buf.skipBytes(length);
+        if (s.length() > maxLength)
+            throw new CorruptedFrameException("String length " + s.length() + " exceeds " + maxLength + " chars");
+        return s;
+    }
+
+    /**
+     * Czyta tablicę bajtów poprzedzoną długością (VarInt), sprawdzając długość przed alokacją.
+     */
+    public static byte[] readByteArray(ByteBuf buf, int maxLength) {
+        int length = readVarInt(buf);
+        if (length < 0 || length > maxLength)
+            throw new CorruptedFrameException("Byte array length " + length + " exceeds " + maxLength);
+        if (buf.readableBytes() < length)
+            throw new CorruptedFrameException("Byte array length " + length + " exceeds readable bytes");
+        byte[] arr = new byte[length];
+        buf.readBytes(arr);
+        return arr;
     }
 
     public static void writeString(ByteBuf buf, String s) {
-        writeVarInt(buf, s.length());
+        writeVarInt(buf, ByteBufUtil.utf8Bytes(s));
         buf.writeCharSequence(s, StandardCharsets.UTF_8);
     }
 
     public static UUID readUUID(ByteBuf buf) {
-        if (buf.readableBytes() < 4) return null;
         long msb = buf.readLong();
         long lsb = buf.readLong();
         return new UUID(msb, lsb);
@@ -17,11 +17,22 @@
 
 package pl.fratik.mcs;
 
+import org.jetbrains.annotations.Nullable;
 import pl.fratik.mcs.players.Player;
 import pl.fratik.mcs.players.WhitelistPlayer;
 
+import java.util.UUID;
+
 public interface Whitelist {
     boolean contains(Player identifier);
+
+    /**
+     * Szybkie sprawdzenie przed szyfrowaniem: false oznacza, że nie ma sensu weryfikować gracza (RSA + sessionserver).
+     *
+     * @param nick nick z LoginStart
+     * @param uuid UUID wysłane przez klienta (1.19+), albo null
+     */
+    boolean mayContain(String nick, @Nullable UUID uuid);
     void add(WhitelistPlayer identifier);
     boolean remove(WhitelistPlayer identifier);
     void clear();
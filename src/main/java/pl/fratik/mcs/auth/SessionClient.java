@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.auth;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.McsConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Współdzielony, nieblokujący klient sessionservera (hasJoined).
+ */
+public class SessionClient {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionClient.class);
+    private final OkHttpClient client;
+    private final String baseUrl;
+    private final long hedgeDelayMs;
+    private final ScheduledExecutorService hedgeScheduler;
+
+    public SessionClient(McsConfig config) {
+        Dispatcher dispatcher = new Dispatcher(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "mcs-session");
+            t.setDaemon(true);
+            return t;
+        }));
+        dispatcher.setMaxRequests(config.getSessionMaxConcurrent());
+        dispatcher.setMaxRequestsPerHost(config.getSessionMaxConcurrent());
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(2, 5, TimeUnit.MINUTES))
+                .connectTimeout(config.getSessionTimeoutMs(), TimeUnit.MILLISECONDS)
+                .callTimeout(config.getSessionTimeoutMs(), TimeUnit.MILLISECONDS)
+                .build();
+        String url = config.getSessionServerUrl();
+        baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        hedgeDelayMs = config.getSessionHedgeDelayMs();
+        if (hedgeDelayMs > 0) {
+            ScheduledThreadPoolExecutor ex = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "mcs-session-hedge");
+                t.setDaemon(true);
+                return t;
+            });
+            ex.setRemoveOnCancelPolicy(true);
+            hedgeScheduler = ex;
+        } else hedgeScheduler = null;
+    }
+
+    public static SessionClient get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Odpytuje hasJoined. Future kończy się UUID gracza albo wyjątkiem; nigdy nie blokuje wywołującego wątku.
+     */
+    public CompletableFuture<UUID> hasJoined(String name, String serverId) {
+        Request request = new Request.Builder().url(baseUrl + "/session/minecraft/hasJoined?username=" +
+                URLEncoder.encode(name, StandardCharsets.UTF_8) + "&serverId=" + serverId).build();
+        CompletableFuture<UUID> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        Call primary = client.newCall(request);
+        primary.enqueue(new ResultCallback(result, pending));
+        if (hedgeScheduler != null) {
+            // hedged request: jeśli pierwsze zapytanie się przeciąga, wysyłamy drugie i bierzemy szybszą odpowiedź
+            ScheduledFuture<?> hedge = hedgeScheduler.schedule(() -> {
+                if (result.isDone()) return;
+                LOGGER.debug("hasJoined dla {} trwa ponad {} ms, wysyłam drugie zapytanie", name, hedgeDelayMs);
+                pending.incrementAndGet();
+                Call secondary = client.newCall(request);
+                result.whenComplete((u, t) -> secondary.cancel());
+                secondary.enqueue(new ResultCallback(result, pending));
+            }, hedgeDelayMs, TimeUnit.MILLISECONDS);
+            result.whenComplete((u, t) -> {
+                hedge.cancel(false);
+                primary.cancel();
+            });
+        }
+        return result;
+    }
+
+    private static UUID parseUuid(String rawUuid) {
+        return UUID.fromString(rawUuid.substring(0, 8) + '-' + rawUuid.substring(8, 12) + '-' +
+                rawUuid.substring(12, 16) + '-' + rawUuid.substring(16, 20) + '-' + rawUuid.substring(20));
+    }
+
+    private static class ResultCallback implements Callback {
+        private final CompletableFuture<UUID> result;
+        private final AtomicInteger pending;
+
+        private ResultCallback(CompletableFuture<UUID> result, AtomicInteger pending) {
+            this.result = result;
+            this.pending = pending;
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            fail(e);
+        }
+
+        private void fail(Exception e) {
+            // przy hedgingu błąd liczy się dopiero, gdy nie czekamy już na żadne inne zapytanie
+            if (pending.decrementAndGet() == 0) result.completeExceptionally(e);
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response resp) {
+            try (resp) {
+                if (resp.code() != 200) throw new IllegalStateException("hasJoined: HTTP " + resp.code());
+                try (Reader r = resp.body().charStream()) {
+                    JsonObject obj = JsonParser.parseReader(r).getAsJsonObject();
+                    result.complete(parseUuid(obj.getAsJsonPrimitive("id").getAsString()));
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+    }
+
+    private static class Holder {
+        private static final SessionClient INSTANCE = new SessionClient(Bootstrap.getConfig());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.backend;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.McsConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serwer Minecraft uruchomiony przez MCS ({@code backendCommand}): proces, sprawdzanie gotowości
+ * i – w trybie proxy – wyłączanie go, gdy nikt nie gra.
+ */
+public class Backend {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Backend.class);
+    private static final int PROBE_TIMEOUT_MS = 500;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("mcs-backend", true));
+    private static Process process;
+    private static long startedAt;
+    private static volatile long portBoundAt;
+    private static volatile boolean ready;
+    private static int connections;
+    private static ScheduledFuture<?> idleStop;
+
+    static {
+        // MCS jest nadzorcą serwera – nie zostawiamy go osieroconego
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Process p;
+            synchronized (Backend.class) {
+                p = process;
+            }
+            if (p == null || !p.isAlive()) return;
+            LOGGER.info("Wyłączam serwer razem z MCS'em...");
+            p.destroy();
+            try {
+                if (!p.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) p.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "mcs-backend-shutdown"));
+    }
+
+    private Backend() {}
+
+    public static boolean isConfigured() {
+        return !Bootstrap.getConfig().getBackendCommand().isEmpty();
+    }
+
+    public static synchronized boolean isRunning() {
+        return process != null;
+    }
+
+    /**
+     * Czy serwer przyjmuje połączenia.
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adres, na którym słucha serwer: w trybie proxy wewnętrzny port, w przeciwnym razie port MCS'a.
+     */
+    public static InetSocketAddress address() {
+        McsConfig config = Bootstrap.getConfig();
+        return new InetSocketAddress("127.0.0.1", config.isProxyMode() ? config.getBackendPort() : Bootstrap.getPort());
+    }
+
+    /**
+     * Uruchamia serwer, jeśli jeszcze nie działa.
+     *
+     * @return proces serwera
+     */
+    public static synchronized Process start() throws IOException {
+        if (process != null) return process;
+        Process p = new ProcessBuilder(Bootstrap.getConfig().getBackendCommand()).inheritIO().start();
+        process = p;
+        startedAt = System.nanoTime();
+        portBoundAt = 0;
+        LOGGER.info("Uruchomiono serwer (PID {})", p.pid());
+        p.onExit().thenRun(() -> exited(p));
+        scheduler.schedule(() -> probe(p), PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        return p;
+    }
+
+    /**
+     * Wyłącza serwer (SIGTERM – serwer zapisuje świat w shutdown hooku).
+     */
+    public static void stop() {
+        Process p;
+        synchronized (Backend.class) {
+            p = process;
+        }
+        if (p != null) p.destroy();
+    }
+
+    /**
+     * Sprawdza gotowość prawdziwym Server List Pingiem: serwer jest gotowy dopiero, gdy odpowie na status,
+     * samo otwarcie portu nie wystarcza.
+     */
+    private static void probe(Process p) {
+        if (!p.isAlive()) return;
+        try {
+            StatusPing.ping(address(), PROBE_TIMEOUT_MS, () -> {
+                if (portBoundAt == 0) portBoundAt = System.nanoTime();
+            });
+        } catch (IOException e) {
+            scheduler.schedule(() -> probe(p), PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (Backend.class) {
+            if (process != p) return;
+            ready = true;
+            if (connections == 0) scheduleIdleStop();
+        }
+        long portBoundMs = TimeUnit.NANOSECONDS.toMillis(portBoundAt - startedAt);
+        long firstStatusMs = TimeUnit.NANOSECONDS.toMillis(now - startedAt);
+        LOGGER.info("Serwer gotowy po {} ms (port otwarty po {} ms)", firstStatusMs, portBoundMs);
+        WaitingRoom.backendReady();
+        WakeHistory.get().record(portBoundMs, firstStatusMs);
+    }
+
+    private static void exited(Process p) {
+        synchronized (Backend.class) {
+            if (process != p) return;
+            LOGGER.info("Serwer zakończył działanie (kod {})", p.exitValue());
+            WaitingRoom.backendExited();
+            process = null;
+            ready = false;
+            if (idleStop != null) idleStop.cancel(false);
+            idleStop = null;
+            Backend.class.notifyAll();
+        }
+    }
+
+    /**
+     * Czeka, aż MCS obsłuży wyłączenie serwera (po {@link Process#waitFor()} callback mógł jeszcze nie przyjść).
+     */
+    static synchronized void awaitExitHandled() throws InterruptedException {
+        while (process != null && !process.isAlive()) Backend.class.wait();
+    }
+
+    static synchronized void connectionOpened() {
+        connections++;
+        if (idleStop != null) idleStop.cancel(false);
+        idleStop = null;
+    }
+
+    static synchronized void connectionClosed() {
+        if (--connections == 0 && ready) scheduleIdleStop();
+    }
+
+    private static void scheduleIdleStop() {
+        int minutes = Bootstrap.getConfig().getProxyIdleMinutes();
+        if (minutes <= 0) return;
+        idleStop = scheduler.schedule(() -> {
+            synchronized (Backend.class) {
+                if (connections > 0) return;
+            }
+            LOGGER.info("Nikogo nie ma od {} min, wyłączam serwer", minutes);
+            stop();
+        }, minutes, TimeUnit.MINUTES);
+    }
+}
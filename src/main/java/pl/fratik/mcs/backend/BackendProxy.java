@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.backend;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.transport.ClientAddress;
+
+/**
+ * Tryb proxy: przekazuje surowe bajty między graczem a serwerem na wewnętrznym porcie.
+ * <p>
+ * Oba kanały mają wyłączony auto-read i czytają dopiero po zapisaniu poprzedniej porcji po drugiej stronie,
+ * więc wolny odbiorca spowalnia nadawcę zamiast zapełniać pamięć. Bufory przechodzą bez kopiowania;
+ * oba kanały dzielą pętlę zdarzeń.
+ */
+public class BackendProxy extends ChannelInboundHandlerAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackendProxy.class);
+    private ChannelFuture connect;
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        Channel inbound = ctx.channel();
+        inbound.config().setAutoRead(false);
+        Backend.connectionOpened();
+        inbound.closeFuture().addListener(f -> Backend.connectionClosed());
+        connect = new io.netty.bootstrap.Bootstrap()
+                .group(inbound.eventLoop())
+                .channel(Bootstrap.getTransport().getSocketChannelClass())
+                .option(ChannelOption.AUTO_READ, false)
+                .handler(new Relay(inbound))
+                .connect(Backend.address());
+        connect.addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) {
+                LOGGER.debug("<-> {} przekazany do serwera", ClientAddress.of(inbound));
+                inbound.read();
+            } else {
+                LOGGER.warn("!X Nie udało się połączyć z serwerem dla {}: {}", ClientAddress.of(inbound), f.cause().getMessage());
+                inbound.close();
+            }
+        });
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        // resztki po nagłówku PROXY mogą przyjść, zanim połączymy się z serwerem
+        if (connect.isDone()) forward(ctx, msg);
+        else connect.addListener(f -> forward(ctx, msg));
+    }
+
+    private void forward(ChannelHandlerContext ctx, Object msg) {
+        if (!connect.isSuccess()) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        connect.channel().writeAndFlush(msg).addListener((ChannelFutureListener) f -> {
+            if (f.isSuccess()) ctx.channel().read();
+            else f.channel().close();
+        });
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (connect != null) closeOnFlush(connect.channel());
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        LOGGER.debug("!X Błąd w połączeniu z {}", ClientAddress.of(ctx.channel()), cause);
+        closeOnFlush(ctx.channel());
+    }
+
+    private static void closeOnFlush(Channel ch) {
+        if (ch.isActive()) ch.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    private static class Relay extends ChannelInboundHandlerAdapter {
+        private final Channel inbound;
+
+        private Relay(Channel inbound) {
+            this.inbound = inbound;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.read();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            inbound.writeAndFlush(msg).addListener((ChannelFutureListener) f -> {
+                if (f.isSuccess()) ctx.channel().read();
+                else f.channel().close();
+            });
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            closeOnFlush(inbound);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            closeOnFlush(ctx.channel());
+        }
+    }
+}
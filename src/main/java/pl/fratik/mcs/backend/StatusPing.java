@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.backend;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import pl.fratik.mcs.ProtocolUtil;
+import pl.fratik.mcs.packets.HandshakePacket;
+import pl.fratik.mcs.packets.ResponsePacket;
+import pl.fratik.mcs.packets.StatusRequestPacket;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Blokujący Server List Ping – wysyła handshake i zapytanie o status, czeka na nagłówek odpowiedzi.
+ */
+public class StatusPing {
+    private StatusPing() {}
+
+    /**
+     * @param onConnected wywoływane, gdy port przyjmie połączenie (jeszcze przed odpowiedzią)
+     * @throws IOException jeśli nie udało się połączyć albo serwer nie odpowiedział na status
+     */
+    public static void ping(InetSocketAddress address, int timeoutMs, Runnable onConnected) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, timeoutMs);
+            onConnected.run();
+            socket.setSoTimeout(timeoutMs * 4);
+            OutputStream out = socket.getOutputStream();
+            writeFrame(out, new HandshakePacket(-1, address.getHostString(), address.getPort(), 1));
+            writeFrame(out, new StatusRequestPacket());
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            readVarInt(in); // długość
+            if (readVarInt(in) != 0x00) throw new IOException("Nieoczekiwana odpowiedź na status");
+        }
+    }
+
+    // sonda chodzi co kilkaset ms przy wybudzaniu – bufory z puli zamiast direct z PreEncoded (ten jest dla stałych)
+    private static void writeFrame(OutputStream out, ResponsePacket packet) throws IOException {
+        ByteBuf body = ByteBufAllocator.DEFAULT.heapBuffer();
+        ByteBuf frame = ByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            packet.encode(body, -1);
+            ProtocolUtil.writeVarInt(frame, body.readableBytes());
+            frame.writeBytes(body);
+            frame.readBytes(out, frame.readableBytes());
+        } finally {
+            body.release();
+            frame.release();
+        }
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int i = 0; i < ProtocolUtil.MAX_VARINT_SIZE; i++) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << (i * 7);
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("VarInt za długi");
+    }
+}
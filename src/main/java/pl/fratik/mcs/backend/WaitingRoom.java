@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.backend;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.packets.ConfigurationDisconnectPacket;
+import pl.fratik.mcs.packets.KeepAlivePacket;
+import pl.fratik.mcs.packets.TransferPacket;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poczekalnia: trzyma graczy 1.20.5+ w fazie konfiguracji, dopóki {@link Backend} nie zacznie przyjmować połączeń,
+ * a potem przenosi ich pakietem Transfer pod ten sam adres.
+ * <p>
+ * Bez {@code backendCommand} serwer uruchamia skrypt dopiero po wyjściu MCS'a, więc poczekalnia nie ma jak działać.
+ */
+public class WaitingRoom {
+    public static final int MIN_PROTOCOL = 766;
+    private static final Logger LOGGER = LoggerFactory.getLogger(WaitingRoom.class);
+    private static final long KEEP_ALIVE_INTERVAL_MS = 10_000;
+    private static final AttributeKey<TransferTarget> TRANSFER_TARGET = AttributeKey.valueOf("mcs-transfer-target");
+    private static final ChannelGroup waiting = new DefaultChannelGroup("mcs-waiting", GlobalEventExecutor.INSTANCE);
+    // wątek powstaje dopiero przy pierwszym wybudzeniu – większość uruchomień MCS'a nigdy go nie potrzebuje
+    private static ScheduledExecutorService scheduler;
+    private static ScheduledFuture<?> keepAlive;
+    private static long startedAt;
+
+    private WaitingRoom() {}
+
+    /**
+     * Czy gracz z tą wersją może poczekać, zamiast dostać disconnect.
+     */
+    public static boolean accepts(int protVer) {
+        return protVer >= MIN_PROTOCOL && Backend.isConfigured() && Bootstrap.isAcceptsTransfers();
+    }
+
+    /**
+     * Za ile sekund serwer powinien być gotowy (licząc od pierwszej próby wejścia). Bierze średnią z historii
+     * wybudzeń, a bez niej – {@code startupEstimateSeconds} z configu.
+     */
+    public static synchronized int secondsUntilReady() {
+        int estimate = WakeHistory.get().averageSeconds();
+        if (estimate < 0) estimate = Bootstrap.getConfig().getStartupEstimateSeconds();
+        if (startedAt == 0) return estimate;
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt);
+        return (int) Math.max(5, estimate - elapsed);
+    }
+
+    /**
+     * Budzi serwer. W trybie proxy uruchamia go od razu, w przeciwnym razie zamyka nasłuch (otwarte połączenia
+     * zostają), a serwer uruchomi {@link #runBackend()}. Wywołania po pierwszym nic nie robią.
+     */
+    public static synchronized void start() {
+        if (startedAt != 0) return;
+        long started = startedAt = System.nanoTime();
+        if (Bootstrap.getConfig().isProxyMode()) scheduler().execute(WaitingRoom::launch);
+        else Bootstrap.getChannels().close();
+        scheduler().schedule(() -> {
+            synchronized (WaitingRoom.class) {
+                if (startedAt != started || Backend.isReady()) return;
+            }
+            disconnectAll("Serwer nie uruchomił się na czas, spróbuj ponownie za chwilę.");
+        }, Bootstrap.getConfig().getWaitingRoomTimeoutSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Uruchamia serwer i czeka, aż się wyłączy (poza trybem proxy, po zamknięciu nasłuchu).
+     *
+     * @return false jeśli serwer nie jest skonfigurowany albo nikt nie próbował wejść – MCS powinien się wtedy
+     *         zakończyć i zostawić uruchomienie serwera skryptowi
+     */
+    public static boolean runBackend() throws InterruptedException {
+        synchronized (WaitingRoom.class) {
+            if (startedAt == 0 || !Backend.isConfigured() || Bootstrap.getConfig().isProxyMode()) return false;
+        }
+        Process process = launch();
+        if (process != null) process.waitFor();
+        // onExit() mogło jeszcze nie wyczyścić stanu – bez tego pierwszy gracz po powrocie nie obudziłby serwera
+        Backend.awaitExitHandled();
+        return true;
+    }
+
+    private static Process launch() {
+        try {
+            return Backend.start();
+        } catch (IOException e) {
+            LOGGER.error("Nie udało się uruchomić serwera!", e);
+            backendExited();
+            return null;
+        }
+    }
+
+    static void backendReady() {
+        LOGGER.info("Przenoszę {} graczy z poczekalni", waiting.size());
+        for (Channel ch : waiting) {
+            if (waiting.remove(ch)) transfer(ch);
+        }
+    }
+
+    static void backendExited() {
+        synchronized (WaitingRoom.class) {
+            startedAt = 0;
+        }
+        disconnectAll("Serwer wyłączył się podczas uruchamiania.");
+    }
+
+    /**
+     * Dodaje gracza (po Login Acknowledged) do poczekalni.
+     *
+     * @param host adres, pod który gracz się łączył (z handshake'a)
+     */
+    public static void join(Channel channel, String host, int port) {
+        channel.attr(TRANSFER_TARGET).set(new TransferTarget(host, port));
+        waiting.add(channel);
+        // serwer mógł wstać, zanim gracz skończył logowanie
+        if (Backend.isReady() && waiting.remove(channel)) transfer(channel);
+        else scheduleKeepAlive();
+    }
+
+    private static synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null)
+            scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("mcs-waiting", true));
+        return scheduler;
+    }
+
+    private static synchronized void scheduleKeepAlive() {
+        if (keepAlive != null) return;
+        keepAlive = scheduler().scheduleAtFixedRate(WaitingRoom::keepAlive,
+                KEEP_ALIVE_INTERVAL_MS, KEEP_ALIVE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void keepAlive() {
+        synchronized (WaitingRoom.class) {
+            // join() dodaje gracza przed scheduleKeepAlive(), więc po anulowaniu tutaj nowy gracz zaplanuje go od nowa
+            if (waiting.isEmpty()) {
+                keepAlive.cancel(false);
+                keepAlive = null;
+                return;
+            }
+        }
+        waiting.writeAndFlush(new KeepAlivePacket(System.currentTimeMillis()));
+    }
+
+    private static void transfer(Channel channel) {
+        TransferTarget target = channel.attr(TRANSFER_TARGET).get();
+        channel.writeAndFlush(new TransferPacket(target.host(), target.port())).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    private static void disconnectAll(String reason) {
+        if (waiting.isEmpty()) return;
+        waiting.writeAndFlush(new ConfigurationDisconnectPacket(reason)).addListener(f -> waiting.close());
+    }
+
+    private record TransferTarget(String host, int port) {}
+}
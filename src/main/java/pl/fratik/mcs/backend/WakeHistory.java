@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.backend;
+
+import com.google.gson.Gson;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Historia wybudzeń serwera: ile trwało od uruchomienia procesu do otwarcia portu i do pierwszej odpowiedzi na status.
+ * Średnia trafia do MOTD i komunikatów "gotowy za ok. N s".
+ */
+@Data
+public class WakeHistory {
+    public static final String FILE = "./mcs-wakes.json";
+    private static final Logger LOGGER = LoggerFactory.getLogger(WakeHistory.class);
+    private static final int MAX_ENTRIES = 20;
+    private static WakeHistory instance;
+
+    private List<Wake> wakes = new ArrayList<>();
+
+    public static synchronized WakeHistory get() {
+        if (instance != null) return instance;
+        if (new File(FILE).exists()) {
+            try (Reader r = new FileReader(FILE)) {
+                instance = new Gson().fromJson(r, WakeHistory.class);
+            } catch (Exception e) {
+                LOGGER.warn("Nie udało się odczytać historii wybudzeń, zaczynam od nowa", e);
+            }
+        }
+        if (instance == null || instance.wakes == null) instance = new WakeHistory();
+        return instance;
+    }
+
+    /**
+     * Zapisuje wybudzenie (czasy w ms od uruchomienia procesu) i od razu zrzuca historię na dysk.
+     */
+    public synchronized void record(long portBoundMs, long firstStatusMs) {
+        wakes.add(new Wake(System.currentTimeMillis(), portBoundMs, firstStatusMs));
+        if (wakes.size() > MAX_ENTRIES) wakes.subList(0, wakes.size() - MAX_ENTRIES).clear();
+        try (Writer w = new FileWriter(FILE)) {
+            new Gson().toJson(this, w);
+        } catch (IOException e) {
+            LOGGER.warn("Nie udało się zapisać historii wybudzeń", e);
+        }
+    }
+
+    /**
+     * @return średni czas do pierwszej odpowiedzi na status w sekundach (zaokrąglony w górę), albo -1 bez historii
+     */
+    public synchronized int averageSeconds() {
+        if (wakes.isEmpty()) return -1;
+        long sum = 0;
+        for (Wake wake : wakes) sum += wake.getFirstStatusMs();
+        return (int) ((sum / wakes.size() + 999) / 1000);
+    }
+
+    // konstruktor bez argumentów dla Gsona – bez niego Gson tworzy obiekt przez Unsafe, czego binarka natywna nie pozwala
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Wake {
+        private long at;
+        private long portBoundMs;
+        private long firstStatusMs;
+    }
+}
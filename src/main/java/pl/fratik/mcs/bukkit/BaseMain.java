@@ -27,11 +27,17 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
+import pl.fratik.mcs.status.StatusSnapshot;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public abstract class BaseMain extends JavaPlugin implements Listener {
     @Getter protected ScheduledExecutorService executor;
@@ -80,5 +86,30 @@ public abstract class BaseMain extends JavaPlugin implements Listener {
     @Override
     public void onDisable() {
         executor.shutdown();
+        saveStatusSnapshot();
+    }
+
+    protected void saveStatusSnapshot() {
+        StatusSnapshot snapshot = new StatusSnapshot();
+        snapshot.setMotd(Bukkit.getMotd());
+        snapshot.setVersionName(Bukkit.getBukkitVersion().split("-")[0]);
+        snapshot.setProtocol(getProtocolVersion());
+        snapshot.setMaxPlayers(Bukkit.getMaxPlayers());
+        try {
+            File icon = new File("server-icon.png");
+            // base64 liczymy tu, raz – MCS wczyta gotowy string przy starcie
+            if (icon.isFile()) snapshot.setFavicon("data:image/png;base64," +
+                    Base64.getEncoder().encodeToString(Files.readAllBytes(icon.toPath())));
+            snapshot.write();
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Nie udało się zapisać stanu serwera dla MCS", e);
+        }
+    }
+
+    /**
+     * @return numer protokołu serwera, albo -1 jeśli API go nie udostępnia (Spigot)
+     */
+    protected int getProtocolVersion() {
+        return -1;
     }
 }
@@ -17,10 +17,17 @@
 
 package pl.fratik.mcs.bukkit;
 
+import org.bukkit.Bukkit;
+
 public final class PaperMain extends BaseMain {
     @Override
     public void onEnable() {
         super.onEnable();
         getServer().getPluginManager().registerEvents(new PaperMotdListener(this), this);
     }
+
+    @Override
+    protected int getProtocolVersion() {
+        return Bukkit.getUnsafe().getProtocolVersion();
+    }
 }
@@ -17,10 +17,20 @@
 
 package pl.fratik.mcs.chat;
 
-import com.google.gson.JsonObject;
-
+/**
+ * Niezmienny komponent czatu – można go współdzielić między wątkami i trzymać jako stałą.
+ */
 public interface ChatComponent {
-    JsonObject serialize(int version);
+    /**
+     * Dopisuje komponent jako JSON. Wynik zawiera tylko znaki ASCII (reszta jest escapowana),
+     * więc ilość bajtów UTF-8 jest równa ilości znaków.
+     */
+    void serialize(StringBuilder sb, int version);
     String serializeLegacy();
 
+    default String serialize(int version) {
+        StringBuilder sb = new StringBuilder();
+        serialize(sb, version);
+        return sb.toString();
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.chat;
+
+class JsonUtil {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+
+    private JsonUtil() {}
+
+    static void appendField(StringBuilder sb, String name, String value) {
+        appendName(sb, name);
+        appendString(sb, value);
+    }
+
+    static void appendField(StringBuilder sb, String name, boolean value) {
+        appendName(sb, name);
+        sb.append(value);
+    }
+
+    static void appendName(StringBuilder sb, String name) {
+        if (sb.charAt(sb.length() - 1) != '{') sb.append(',');
+        appendString(sb, name);
+        sb.append(':');
+    }
+
+    /**
+     * Dopisuje string JSON bajt w bajt tak jak wcześniej {@code JsonElement.toString()} (Gson bez escapowania HTML)
+     * i escapowanie z StringEscapeUtils: Gson escapuje cudzysłów, backslash i znaki kontrolne (kod szesnastkowy
+     * małymi literami), a znaki spoza ASCII trafiają do wyniku jako escape z kodem wielkimi literami.
+     */
+    static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\b' -> sb.append("\\b");
+                case '\n' -> sb.append("\\n");
+                case '\t' -> sb.append("\\t");
+                case '\f' -> sb.append("\\f");
+                case '\r' -> sb.append("\\r");
+                default -> {
+                    if (ch < 0x20) appendUnicode(sb, ch, HEX_LOWER);
+                    else if (ch > 0x7f) appendUnicode(sb, ch, HEX);
+                    else sb.append(ch);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void appendUnicode(StringBuilder sb, char ch, char[] hex) {
+        sb.append("\\u").append(hex[(ch >> 12) & 0xF]).append(hex[(ch >> 8) & 0xF])
+                .append(hex[(ch >> 4) & 0xF]).append(hex[ch & 0xF]);
+    }
+}
@@ -17,12 +17,7 @@
 
 package pl.fratik.mcs.chat;
 
-import com.google.gson.JsonObject;
 import lombok.Getter;
-import lombok.Setter;
-
-import java.io.StringWriter;
-import java.util.Locale;
 
 public class TextChatComponent implements ChatComponent {
     private static final char CONTROL = '§';
@@ -31,37 +26,53 @@ public class TextChatComponent implements ChatComponent {
     private static final int UNDER_OFFSET = 2;
     private static final int STRIKE_OFFSET = 1;
     private static final int OBFUSCATED_OFFSET = 0;
-    @Getter @Setter protected String text;
-    @Getter @Setter protected int color = -1; //-1 / 0-15, dla prostoty nie dla hexu
-    protected byte style; // BIUSO
+    @Getter protected final String text;
+    @Getter protected final int color; //-1 / 0-15, dla prostoty nie dla hexu
+    protected final byte style; // BIUSO
 
     public TextChatComponent(String text) {
+        this(text, -1, (byte) 0);
+    }
+
+    protected TextChatComponent(String text, int color, byte style) {
         this.text = text;
+        this.color = color;
+        this.style = style;
+    }
+
+    /**
+     * Kopia z innym kolorem/stylem – podklasy nadpisują, żeby with* nie gubiły ich pól.
+     */
+    protected TextChatComponent withStyle(int color, byte style) {
+        return new TextChatComponent(text, color, style);
+    }
+
+    public TextChatComponent withColor(int color) {
+        return withStyle(color, style);
     }
 
-    public void setBold(boolean bold) {
-        if (bold) style |= 1 << BOLD_OFFSET;
-        else style &= ~(1 << BOLD_OFFSET);
+    public TextChatComponent withBold(boolean bold) {
+        return withStyle(color, withFlag(BOLD_OFFSET, bold));
     }
 
-    public void setItalic(boolean italic) {
-        if (italic) style |= 1 << ITALIC_OFFSET;
-        else style &= ~(1 << ITALIC_OFFSET);
+    public TextChatComponent withItalic(boolean italic) {
+        return withStyle(color, withFlag(ITALIC_OFFSET, italic));
     }
 
-    public void setUnderline(boolean under) {
-        if (under) style |= 1 << UNDER_OFFSET;
-        else style &= ~(1 << UNDER_OFFSET);
+    public TextChatComponent withUnderline(boolean under) {
+        return withStyle(color, withFlag(UNDER_OFFSET, under));
     }
 
-    public void setStrikethrough(boolean strike) {
-        if (strike) style |= 1 << STRIKE_OFFSET;
-        else style &= ~(1 << STRIKE_OFFSET);
+    public TextChatComponent withStrikethrough(boolean strike) {
+        return withStyle(color, withFlag(STRIKE_OFFSET, strike));
     }
 
-    public void setObfuscated(boolean obfuscated) {
-        if (obfuscated) style |= 1 << OBFUSCATED_OFFSET;
-        else style &= ~(1 << OBFUSCATED_OFFSET);
+    public TextChatComponent withObfuscated(boolean obfuscated) {
+        return withStyle(color, withFlag(OBFUSCATED_OFFSET, obfuscated));
+    }
+
+    private byte withFlag(int offset, boolean value) {
+        return (byte) (value ? style | 1 << offset : style & ~(1 << offset));
     }
 
     public boolean isBold() {
@@ -85,20 +96,28 @@ public class TextChatComponent implements ChatComponent {
     }
 
     @Override
-    public JsonObject serialize(int version) {
-        JsonObject obj = new JsonObject();
-        if (text != null) obj.addProperty("text", text);
-        if (isBold()) obj.addProperty("bold", true);
-        if (isItalic()) obj.addProperty("italic", true);
-        if (isUnderlined()) obj.addProperty("underlined", true);
-        if (isStrikethrough()) obj.addProperty("strikethrough", true);
-        if (isObfuscated()) obj.addProperty("obfuscated", true);
-        if (color != -1) obj.addProperty("color", Integer.toString(Math.abs(color), 10));
-        return obj;
+    public void serialize(StringBuilder sb, int version) {
+        sb.append('{');
+        serializeFields(sb, text);
+        sb.append('}');
+    }
+
+    protected void serializeFields(StringBuilder sb, String text) {
+        if (text != null) JsonUtil.appendField(sb, "text", text);
+        if (isBold()) JsonUtil.appendField(sb, "bold", true);
+        if (isItalic()) JsonUtil.appendField(sb, "italic", true);
+        if (isUnderlined()) JsonUtil.appendField(sb, "underlined", true);
+        if (isStrikethrough()) JsonUtil.appendField(sb, "strikethrough", true);
+        if (isObfuscated()) JsonUtil.appendField(sb, "obfuscated", true);
+        if (color != -1) JsonUtil.appendField(sb, "color", Integer.toString(Math.abs(color), 10));
     }
 
     @Override
     public String serializeLegacy() {
+        return serializeLegacy(text);
+    }
+
+    protected String serializeLegacy(String text) {
         StringBuilder sb = new StringBuilder();
         if (color != -1) sb.append(CONTROL).append(Integer.toString(color, 16));
         if (isBold()) sb.append(CONTROL).append('l');
@@ -17,9 +17,6 @@
 
 package pl.fratik.mcs.chat;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-
 import java.util.Arrays;
 
 public class TranslateChatComponent extends TextChatComponent {
@@ -29,7 +26,12 @@ public class TranslateChatComponent extends TextChatComponent {
     private final int minimumVersion;
 
     public TranslateChatComponent(String key, ChatComponent[] objs, String fallback, int minimumVersion) {
-        super(null);
+        this(key, objs == null ? null : objs.clone(), fallback, minimumVersion, -1, (byte) 0);
+    }
+
+    private TranslateChatComponent(String key, ChatComponent[] objs, String fallback, int minimumVersion,
+                                   int color, byte style) {
+        super(null, color, style);
         this.key = key;
         this.objs = objs;
         this.fallback = fallback;
@@ -37,26 +39,63 @@ public class TranslateChatComponent extends TextChatComponent {
     }
 
     @Override
-    public JsonObject serialize(int version) {
-        if (version < minimumVersion) text = fallback;
-        JsonObject serialized = super.serialize(version);
+    protected TranslateChatComponent withStyle(int color, byte style) {
+        return new TranslateChatComponent(key, objs, fallback, minimumVersion, color, style);
+    }
+
+    @Override
+    public TranslateChatComponent withColor(int color) {
+        return (TranslateChatComponent) super.withColor(color);
+    }
+
+    @Override
+    public TranslateChatComponent withBold(boolean bold) {
+        return (TranslateChatComponent) super.withBold(bold);
+    }
+
+    @Override
+    public TranslateChatComponent withItalic(boolean italic) {
+        return (TranslateChatComponent) super.withItalic(italic);
+    }
+
+    @Override
+    public TranslateChatComponent withUnderline(boolean under) {
+        return (TranslateChatComponent) super.withUnderline(under);
+    }
+
+    @Override
+    public TranslateChatComponent withStrikethrough(boolean strike) {
+        return (TranslateChatComponent) super.withStrikethrough(strike);
+    }
+
+    @Override
+    public TranslateChatComponent withObfuscated(boolean obfuscated) {
+        return (TranslateChatComponent) super.withObfuscated(obfuscated);
+    }
+
+    @Override
+    public void serialize(StringBuilder sb, int version) {
+        sb.append('{');
+        // starsze klienty nie znają klucza, dostają tekst zastępczy
+        serializeFields(sb, version < minimumVersion ? fallback : null);
         if (version >= minimumVersion) {
-            serialized.addProperty("translate", key);
+            JsonUtil.appendField(sb, "translate", key);
             if (objs != null && objs.length != 0) {
-                JsonArray arr = new JsonArray();
-                for (ChatComponent obj : objs) {
-                    arr.add(obj.serialize(version));
+                JsonUtil.appendName(sb, "with");
+                sb.append('[');
+                for (int i = 0; i < objs.length; i++) {
+                    if (i != 0) sb.append(',');
+                    objs[i].serialize(sb, version);
                 }
-                serialized.add("with", arr);
+                sb.append(']');
             }
         }
-        return serialized;
+        sb.append('}');
     }
 
     @Override
     public String serializeLegacy() {
-        if (objs != null && objs.length != 0) text = String.format(fallback, (Object[]) Arrays.stream(objs).map(ChatComponent::serializeLegacy).toArray(String[]::new));
-        else text = fallback;
-        return super.serializeLegacy();
+        if (objs != null && objs.length != 0) return serializeLegacy(String.format(fallback, (Object[]) Arrays.stream(objs).map(ChatComponent::serializeLegacy).toArray(String[]::new)));
+        return serializeLegacy(fallback);
     }
 }
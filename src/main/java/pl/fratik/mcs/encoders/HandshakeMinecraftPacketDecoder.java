@@ -20,6 +20,7 @@ package pl.fratik.mcs.encoders;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
 import pl.fratik.mcs.ProtocolUtil;
 import pl.fratik.mcs.packets.HandshakePacket;
 
@@ -29,15 +30,12 @@ public class HandshakeMinecraftPacketDecoder extends ByteToMessageDecoder {
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         int id = ProtocolUtil.readVarInt(in);
-        switch (id) {
-            case 0x00 -> {
-                int protVer = ProtocolUtil.readVarInt(in);
-                String ip = ProtocolUtil.readString(in);
-                int port = in.readUnsignedShort();
-                int state = ProtocolUtil.readVarInt(in);
-                out.add(new HandshakePacket(protVer, ip, port, state));
-            }
-            default -> throw new IllegalStateException();
-        }
+        if (id != 0x00) throw new CorruptedFrameException("Unexpected handshake packet id " + id);
+        int protVer = ProtocolUtil.readVarInt(in);
+        String ip = ProtocolUtil.readString(in, 255);
+        int port = in.readUnsignedShort();
+        int state = ProtocolUtil.readVarInt(in);
+        if (state != 1 && state != 2) throw new CorruptedFrameException("Unexpected next state " + state);
+        out.add(new HandshakePacket(protVer, ip, port, state));
     }
 }
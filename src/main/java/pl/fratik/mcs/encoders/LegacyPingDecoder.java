@@ -54,11 +54,9 @@ public class LegacyPingDecoder extends ByteToMessageDecoder {
 
             in.skipBytes(in.readableBytes());
             out.add(new LegacyPingPacket());
-            ctx.pipeline().remove("length");
         } else if (first == 0x02 && in.isReadable()) {
             in.skipBytes(in.readableBytes());
             out.add(new LegacyHandshakePacket());
-            ctx.pipeline().remove("length");
         } else {
             in.readerIndex(originalReaderIndex);
             ctx.pipeline().remove(this);
@@ -19,17 +19,67 @@ package pl.fratik.mcs.encoders;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import pl.fratik.mcs.ProtocolUtil;
 
 import java.util.List;
 
 public class MinecraftFrameDecoder extends ByteToMessageDecoder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MinecraftFrameDecoder.class);
+    // handshake: id + wersja + adres (255 znaków) + port + stan
+    public static final int MAX_HANDSHAKE_FRAME = 1024;
+    // status request / ping
+    public static final int MAX_STATUS_FRAME = 16;
+    // login start z kluczem (1.19) jest największy: klucz publiczny + podpis Mojangu
+    public static final int MAX_LOGIN_FRAME = 8192;
+    // poczekalnia: pakiety konfiguracji (i wiadomości pluginów od modów) są tylko pomijane
+    public static final int MAX_CONFIGURATION_FRAME = 32767;
+
+    private int maxFrameSize = MAX_HANDSHAKE_FRAME;
+    private boolean discarding;
+
+    public static void setMaxFrameSize(ChannelPipeline pipeline, int maxFrameSize) {
+        MinecraftFrameDecoder decoder = pipeline.get(MinecraftFrameDecoder.class);
+        if (decoder != null) decoder.maxFrameSize = maxFrameSize;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        Integer length = ProtocolUtil.readVarInt(in);
-        if (length == null) return;
-        if (in.readableBytes() < length) return;
+        if (discarding) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        int length;
+        int index = in.readerIndex();
+        try {
+            if (ProtocolUtil.varIntSize(in) == 0) {
+                // niepełny VarInt, czekamy na resztę
+                return;
+            }
+            length = ProtocolUtil.readVarInt(in);
+        } catch (CorruptedFrameException e) {
+            reject(ctx, in, "nieprawidłowa długość ramki");
+            return;
+        }
+        if (length <= 0 || length > maxFrameSize) {
+            reject(ctx, in, "ramka za duża (" + length + " > " + maxFrameSize + ")");
+            return;
+        }
+        if (in.readableBytes() < length) {
+            in.readerIndex(index);
+            return;
+        }
         out.add(in.readRetainedSlice(length));
     }
+
+    private void reject(ChannelHandlerContext ctx, ByteBuf in, String reason) {
+        discarding = true;
+        in.skipBytes(in.readableBytes());
+        LOGGER.debug("!X Odrzucam połączenie z {}: {}", ctx.channel().remoteAddress(), reason);
+        ctx.close();
+    }
 }
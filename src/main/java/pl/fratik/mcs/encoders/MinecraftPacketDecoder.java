@@ -20,10 +20,12 @@ package pl.fratik.mcs.encoders;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
 import pl.fratik.mcs.Main;
 import pl.fratik.mcs.ProtocolUtil;
 import pl.fratik.mcs.encoders.protocol.ProtocolDecoder;
 import pl.fratik.mcs.encoders.protocol.ProtocolDecoderRegistry;
+import pl.fratik.mcs.packets.LoginAcknowledgedPacket;
 import pl.fratik.mcs.packets.PingRequestPacket;
 import pl.fratik.mcs.packets.StatusRequestPacket;
 
@@ -35,13 +37,19 @@ public class MinecraftPacketDecoder extends ByteToMessageDecoder {
 
     public MinecraftPacketDecoder(Main main) {
         this.main = main;
-        this.decoder = ProtocolDecoderRegistry.createRegistry(main);
+        this.decoder = ProtocolDecoderRegistry.findDecoder(main.getProtVer());
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         switch (main.getState()) {
             case STATUS -> decodeStatus(ctx, in, out);
+            case JOINING -> {
+                int id = ProtocolUtil.readVarInt(in);
+                if (id == 0x03) out.add(new LoginAcknowledgedPacket());
+                else in.skipBytes(in.readableBytes());
+            }
+            case WAITING_ROOM -> in.skipBytes(in.readableBytes());
             default -> {
                 if (decoder == null) in.skipBytes(in.readableBytes());
                 else decoder.decodeLogin(ctx, in, out);
@@ -54,7 +62,7 @@ public class MinecraftPacketDecoder extends ByteToMessageDecoder {
         switch (id) {
             case 0x00 -> out.add(new StatusRequestPacket());
             case 0x01 -> out.add(new PingRequestPacket(in.readLong()));
-            default -> throw new IllegalStateException();
+            default -> throw new CorruptedFrameException("Unexpected status packet id " + id);
         }
     }
 }
@@ -20,18 +20,30 @@ package pl.fratik.mcs.encoders;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
-import pl.fratik.mcs.Main;
+import io.netty.util.AttributeKey;
+import pl.fratik.mcs.ProtocolUtil;
 import pl.fratik.mcs.packets.ResponsePacket;
 
+/**
+ * Koduje pakiet i od razu ramkę długości, w jednym buforze (bez kopiowania).
+ * Gotowe bufory (ByteBuf) przechodzą bez zmian.
+ */
 public class MinecraftPacketEncoder extends MessageToByteEncoder<ResponsePacket> {
+    public static final AttributeKey<Integer> PROTOCOL_VERSION = AttributeKey.valueOf("mcs-protocol-version");
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ResponsePacket msg, ByteBuf out) throws Exception {
-        msg.encode(out, ctx.pipeline().get(Main.class).getProtVer());
-    }
-
-    @Override
-    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ResponsePacket msg, boolean preferDirect) throws Exception {
-        return ctx.alloc().heapBuffer(msg.calculateLength(ctx.pipeline().get(Main.class).getProtVer()));
+        // rezerwujemy miejsce na najdłuższy możliwy VarInt, a po zakodowaniu wpisujemy długość tuż przed treść
+        int bodyStart = out.writerIndex() + ProtocolUtil.MAX_VARINT_SIZE;
+        out.ensureWritable(ProtocolUtil.MAX_VARINT_SIZE).writerIndex(bodyStart);
+        Integer protVer = ctx.channel().attr(PROTOCOL_VERSION).get();
+        msg.encode(out, protVer == null ? -1 : protVer);
+        int length = out.writerIndex() - bodyStart;
+        int frameStart = bodyStart - ProtocolUtil.varIntBytes(length);
+        int end = out.writerIndex();
+        out.writerIndex(frameStart);
+        ProtocolUtil.writeVarInt(out, length);
+        out.writerIndex(end);
+        out.readerIndex(frameStart);
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encoders.protocol;
+
+import io.netty.buffer.ByteBuf;
+import pl.fratik.mcs.ProtocolUtil;
+
+/**
+ * Pola pakietu Encryption Response (0x01), w kolejności w jakiej występują w danej wersji protokołu.
+ */
+public enum EncryptionResponseField {
+    SHARED_SECRET {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            f.sharedSecret = ProtocolUtil.readByteArray(in, MAX_RSA_BLOCK_LENGTH);
+        }
+    },
+    VERIFY_TOKEN {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            f.verifyToken = ProtocolUtil.readByteArray(in, MAX_RSA_BLOCK_LENGTH);
+        }
+    },
+    /** 1.19 – 1.19.2: zaszyfrowany token albo sól + podpis kluczem gracza */
+    VERIFY_TOKEN_OR_SIGNATURE {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            if (!in.readBoolean()) f.salt = in.readLong();
+            f.verifyToken = ProtocolUtil.readByteArray(in, MAX_RSA_BLOCK_LENGTH);
+        }
+    };
+
+    // zaszyfrowane 1024-bitowym kluczem serwera albo podpisane 2048-bitowym kluczem gracza
+    private static final int MAX_RSA_BLOCK_LENGTH = 256;
+
+    abstract void read(ByteBuf in, LoginFields f);
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encoders.protocol;
+
+import pl.fratik.mcs.encryption.IdentifiedKey;
+
+import java.util.UUID;
+
+/**
+ * Wartości odczytane z pakietu logowania, zanim zostanie z nich zbudowany właściwy pakiet.
+ */
+class LoginFields {
+    String name;
+    UUID uuid;
+    IdentifiedKey identifiedKey;
+    byte[] sharedSecret;
+    byte[] verifyToken;
+    Long salt;
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encoders.protocol;
+
+import io.netty.buffer.ByteBuf;
+import pl.fratik.mcs.ProtocolUtil;
+import pl.fratik.mcs.encryption.IdentifiedKey;
+
+/**
+ * Pola pakietu Login Start (0x00), w kolejności w jakiej występują w danej wersji protokołu.
+ */
+public enum LoginStartField {
+    NAME {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            f.name = ProtocolUtil.readString(in, MAX_NAME_LENGTH);
+        }
+    },
+    /** 1.19 – 1.19.2: opcjonalny klucz gracza podpisany przez Mojang */
+    OPTIONAL_SIGNATURE_DATA {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            if (!in.readBoolean()) return;
+            long expiry = in.readLong();
+            byte[] key = ProtocolUtil.readByteArray(in, MAX_PUBLIC_KEY_LENGTH);
+            byte[] sig = ProtocolUtil.readByteArray(in, MAX_KEY_SIGNATURE_LENGTH);
+            f.identifiedKey = new IdentifiedKey(key, expiry, sig);
+        }
+    },
+    OPTIONAL_UUID {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            if (in.readBoolean()) f.uuid = ProtocolUtil.readUUID(in);
+        }
+    },
+    UUID {
+        @Override
+        void read(ByteBuf in, LoginFields f) {
+            f.uuid = ProtocolUtil.readUUID(in);
+        }
+    };
+
+    private static final int MAX_NAME_LENGTH = 16;
+    private static final int MAX_PUBLIC_KEY_LENGTH = 512;
+    private static final int MAX_KEY_SIGNATURE_LENGTH = 4096;
+
+    abstract void read(ByteBuf in, LoginFields f);
+}
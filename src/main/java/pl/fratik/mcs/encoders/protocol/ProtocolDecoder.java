@@ -19,15 +19,12 @@ package pl.fratik.mcs.encoders.protocol;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import pl.fratik.mcs.Main;
 
 import java.util.List;
 
+/**
+ * Dekoder pakietów logowania dla zakresu wersji protokołu. Bezstanowy – jedna instancja na wszystkie połączenia.
+ */
 public abstract class ProtocolDecoder {
-    protected final Main main;
-
-    public ProtocolDecoder(Main main) {
-        this.main = main;
-    }
-    public abstract void decodeLogin(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) ;
+    public abstract void decodeLogin(ChannelHandlerContext ctx, ByteBuf in, List<Object> out);
 }
@@ -17,44 +17,59 @@
 
 package pl.fratik.mcs.encoders.protocol;
 
-import it.unimi.dsi.fastutil.ints.IntIntPair;
-import lombok.SneakyThrows;
 import org.jetbrains.annotations.Nullable;
-import pl.fratik.mcs.Main;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import static pl.fratik.mcs.encoders.protocol.EncryptionResponseField.*;
+import static pl.fratik.mcs.encoders.protocol.LoginStartField.NAME;
+import static pl.fratik.mcs.encoders.protocol.LoginStartField.OPTIONAL_SIGNATURE_DATA;
+import static pl.fratik.mcs.encoders.protocol.LoginStartField.OPTIONAL_UUID;
 
 public class ProtocolDecoderRegistry {
-    private static final Map<IntIntPair, Class<? extends ProtocolDecoder>> registry;
+    private static final int MIN_VERSION = 340;
+    private static final int MAX_VERSION = 768;
+    // indeks = wersja protokołu - MIN_VERSION
+    private static final ProtocolDecoder[] registry = new ProtocolDecoder[MAX_VERSION - MIN_VERSION + 1];
 
     static {
-        Map<IntIntPair, Class<? extends ProtocolDecoder>> reg = new HashMap<>();
-        reg.put(IntIntPair.of(340, 758), ProtocolDecoderNoKey.class);
-        reg.put(IntIntPair.of(759, 760), ProtocolDecoderSigData.class);
-        reg.put(IntIntPair.of(761, 763), ProtocolDecoderOptionalUUID.class);
-        reg.put(IntIntPair.of(764, 768), ProtocolDecoderUUID.class);
-        registry = Collections.unmodifiableMap(reg);
+        // nowa wersja Minecrafta = nowy wpis (albo poszerzenie zakresu), bez pisania dekodera
+        register(340, 758, loginStart(NAME),
+                encryptionResponse(SHARED_SECRET, VERIFY_TOKEN));
+        register(759, 760, loginStart(NAME, OPTIONAL_SIGNATURE_DATA, OPTIONAL_UUID),
+                encryptionResponse(SHARED_SECRET, VERIFY_TOKEN_OR_SIGNATURE));
+        register(761, 763, loginStart(NAME, OPTIONAL_UUID),
+                encryptionResponse(SHARED_SECRET, VERIFY_TOKEN));
+        register(764, 768, loginStart(NAME, LoginStartField.UUID),
+                encryptionResponse(SHARED_SECRET, VERIFY_TOKEN));
     }
 
-    @SneakyThrows
-    public static ProtocolDecoder createRegistry(Main main) {
-        Class<? extends ProtocolDecoder> decoder = findDecoder(main.getProtVer());
-        if (decoder == null) return null;
-        return decoder.getDeclaredConstructor(Main.class).newInstance(main);
+    private ProtocolDecoderRegistry() {}
+
+    private static LoginStartField[] loginStart(LoginStartField... fields) {
+        return fields;
     }
 
-    @Nullable
-    private static Class<? extends ProtocolDecoder> findDecoder(int protVer) {
-        for (Map.Entry<IntIntPair, Class<? extends ProtocolDecoder>> e : registry.entrySet()) {
-            IntIntPair k = e.getKey();
-            int min = k.leftInt();
-            int max = k.rightInt();
-            if (protVer >= min && protVer <= max)
-                return e.getValue();
+    private static EncryptionResponseField[] encryptionResponse(EncryptionResponseField... fields) {
+        return fields;
+    }
+
+    private static void register(int min, int max, LoginStartField[] loginStart, EncryptionResponseField[] encryptionResponse) {
+        register(min, max, new SchemaProtocolDecoder(loginStart, encryptionResponse));
+    }
+
+    private static void register(int min, int max, ProtocolDecoder decoder) {
+        if (min < MIN_VERSION || max > MAX_VERSION || min > max)
+            throw new IllegalStateException("Nieprawidłowy zakres wersji: " + min + "-" + max);
+        for (int v = min; v <= max; v++) {
+            if (registry[v - MIN_VERSION] != null)
+                throw new IllegalStateException("Wersja " + v + " ma już dekoder: " + registry[v - MIN_VERSION].getClass().getSimpleName());
+            registry[v - MIN_VERSION] = decoder;
         }
-        return null;
+    }
+
+    @Nullable
+    public static ProtocolDecoder findDecoder(int protVer) {
+        if (protVer < MIN_VERSION || protVer > MAX_VERSION) return null;
+        return registry[protVer - MIN_VERSION];
     }
 
     public static boolean hasDecoderForVersion(int version) {
@@ -19,35 +19,39 @@ package pl.fratik.mcs.encoders.protocol;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import pl.fratik.mcs.Main;
+import io.netty.handler.codec.CorruptedFrameException;
 import pl.fratik.mcs.ProtocolUtil;
 import pl.fratik.mcs.packets.EncryptionResponsePacket;
 import pl.fratik.mcs.packets.LoginStartPacket;
 
 import java.util.List;
 
-public class ProtocolDecoderUUID extends ProtocolDecoder {
-    public ProtocolDecoderUUID(Main main) {
-        super(main);
+/**
+ * Dekoder logowania zbudowany z listy pól – układ pakietów dla danych wersji opisuje {@link ProtocolDecoderRegistry}.
+ */
+public class SchemaProtocolDecoder extends ProtocolDecoder {
+    private final LoginStartField[] loginStart;
+    private final EncryptionResponseField[] encryptionResponse;
+
+    public SchemaProtocolDecoder(LoginStartField[] loginStart, EncryptionResponseField[] encryptionResponse) {
+        this.loginStart = loginStart.clone();
+        this.encryptionResponse = encryptionResponse.clone();
     }
 
     @Override
     public void decodeLogin(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
         int id = ProtocolUtil.readVarInt(in);
+        LoginFields f = new LoginFields();
         switch (id) {
             case 0x00 -> {
-                out.add(new LoginStartPacket(ProtocolUtil.readString(in), ProtocolUtil.readUUID(in), null));
+                for (LoginStartField field : loginStart) field.read(in, f);
+                out.add(new LoginStartPacket(f.name, f.uuid, f.identifiedKey));
             }
             case 0x01 -> {
-                int sslen = ProtocolUtil.readVarInt(in);
-                byte[] ss = new byte[sslen];
-                in.readBytes(ss);
-                int vtlen = ProtocolUtil.readVarInt(in);
-                byte[] vt = new byte[vtlen];
-                in.readBytes(vt);
-                out.add(new EncryptionResponsePacket(ss, vt, null));
+                for (EncryptionResponseField field : encryptionResponse) field.read(in, f);
+                out.add(new EncryptionResponsePacket(f.sharedSecret, f.verifyToken, f.salt));
             }
-            default -> throw new IllegalStateException();
+            default -> throw new CorruptedFrameException("Unexpected login packet id " + id);
         }
     }
 }
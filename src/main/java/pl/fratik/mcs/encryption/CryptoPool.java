@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encryption;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.jetbrains.annotations.Nullable;
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.McsConfig;
+
+import java.util.concurrent.*;
+
+/**
+ * Ograniczona pula wątków do operacji RSA przy logowaniu, żeby nie blokowały pętli zdarzeń.
+ */
+public class CryptoPool {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    public CryptoPool(McsConfig config) {
+        int threads = Math.max(1, config.getCryptoThreads());
+        int maxPending = Math.max(threads, config.getCryptoMaxPending());
+        ThreadPoolExecutor ex = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new DefaultThreadFactory("mcs-crypto", true));
+        ex.allowCoreThreadTimeOut(true);
+        executor = ex;
+        permits = new Semaphore(maxPending);
+    }
+
+    public static CryptoPool get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Zleca zadanie puli.
+     *
+     * @return wynik zadania, albo null jeśli w kolejce jest już za dużo logowań
+     */
+    public <T> @Nullable CompletableFuture<T> trySubmit(Callable<T> task) {
+        if (!permits.tryAcquire()) return null;
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return null;
+        }
+        return future;
+    }
+
+    private static class Holder {
+        private static final CryptoPool INSTANCE = new CryptoPool(Bootstrap.getConfig());
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encryption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+
+public class Decryptor extends MessageToMessageDecoder<ByteBuf> {
+    private final StreamCipher cipher;
+
+    public Decryptor(StreamCipher cipher) {
+        this.cipher = cipher;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        ByteBuf decrypted = ctx.alloc().ioBuffer(msg.readableBytes());
+        try {
+            cipher.process(msg, decrypted);
+            out.add(decrypted);
+        } catch (Exception e) {
+            decrypted.release();
+            throw e;
+        }
+    }
+}
@@ -19,15 +19,15 @@
 
 package pl.fratik.mcs.encryption;
 
-import com.google.common.base.Preconditions;
-import com.google.common.io.ByteStreams;
-
 import javax.crypto.Cipher;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Generic utilities for dealing with encryption operations in Minecraft.
@@ -37,8 +37,16 @@ public enum EncryptionUtils {
 
     public static final String SHA1_WITH_RSA = "SHA1withRSA";
     public static final String SHA256_WITH_RSA = "SHA256withRSA";
-    private static final PublicKey YGGDRASIL_SESSION_KEY;
     private static final KeyFactory RSA_KEY_FACTORY;
+    // Cipher i Signature nie są thread-safe, więc każdy wątek puli trzyma własne instancje
+    private static final ThreadLocal<Cipher> RSA_CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("RSA");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
 
     static {
         try {
@@ -46,19 +54,10 @@ public enum EncryptionUtils {
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
-
-        try {
-            byte[] bytes = ByteStreams.toByteArray(
-                    EncryptionUtils.class.getClassLoader()
-                            .getResourceAsStream("yggdrasil_session_pubkey.der"));
-            YGGDRASIL_SESSION_KEY = parseRsaPublicKey(bytes);
-        } catch (IOException | NullPointerException err) {
-            throw new RuntimeException(err);
-        }
     }
 
     public static PublicKey getYggdrasilSessionKey() {
-        return YGGDRASIL_SESSION_KEY;
+        return YggdrasilKeyHolder.KEY;
     }
 
     /**
@@ -72,9 +71,13 @@ public enum EncryptionUtils {
      */
     public static boolean verifySignature(String algorithm, PublicKey base, byte[] signature,
                                           byte[]... toVerify) {
-        Preconditions.checkArgument(toVerify.length > 0);
+        if (toVerify.length == 0) throw new IllegalArgumentException("Brak danych do weryfikacji");
         try {
-            Signature construct = Signature.getInstance(algorithm);
+            Signature construct = SIGNATURES.get().get(algorithm);
+            if (construct == null) {
+                construct = Signature.getInstance(algorithm);
+                SIGNATURES.get().put(algorithm, construct);
+            }
             construct.initVerify(base);
             for (byte[] bytes : toVerify) {
                 construct.update(bytes);
@@ -134,7 +137,7 @@ public enum EncryptionUtils {
      * @throws GeneralSecurityException if the message couldn't be decoded
      */
     public static byte[] decryptRsa(KeyPair keyPair, byte[] bytes) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance("RSA");
+        Cipher cipher = RSA_CIPHER.get();
         cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
         return cipher.doFinal(bytes);
     }
@@ -156,4 +159,18 @@ public enum EncryptionUtils {
             throw new AssertionError(e);
         }
     }
+
+    // klucz Mojangu jest potrzebny tylko dla klientów 1.19 – 1.19.2 z podpisanym kluczem, nie czytamy go przy starcie
+    private static class YggdrasilKeyHolder {
+        private static final PublicKey KEY;
+
+        static {
+            try (InputStream in = EncryptionUtils.class.getClassLoader()
+                    .getResourceAsStream("yggdrasil_session_pubkey.der")) {
+                KEY = parseRsaPublicKey(in.readAllBytes());
+            } catch (IOException | NullPointerException err) {
+                throw new RuntimeException(err);
+            }
+        }
+    }
 }
@@ -21,30 +21,21 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.IvParameterSpec;
-import java.security.GeneralSecurityException;
-import java.security.Key;
-
 public class Encryptor extends MessageToByteEncoder<ByteBuf> {
-    private final Cipher cipher;
+    private final StreamCipher cipher;
 
-    public Encryptor(Key key) throws GeneralSecurityException {
-        cipher = Cipher.getInstance("AES/CFB8/NoPadding");
-        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(key.getEncoded()));
+    public Encryptor(StreamCipher cipher) {
+        this.cipher = cipher;
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
-        int inBytes = msg.readableBytes();
-        int baseOffset = msg.arrayOffset() + msg.readerIndex();
-        byte[] arr = new byte[cipher.getOutputSize(inBytes)];
-        int len = cipher.update(msg.array(), baseOffset, inBytes, arr, 0);
-        out.writeBytes(arr, 0, len);
+        cipher.process(msg, out);
     }
 
     @Override
     protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) throws Exception {
-        return ctx.alloc().heapBuffer(msg.readableBytes());
+        // CFB8 nie zmienia długości danych
+        return preferDirect ? ctx.alloc().ioBuffer(msg.readableBytes()) : ctx.alloc().heapBuffer(msg.readableBytes());
     }
 }
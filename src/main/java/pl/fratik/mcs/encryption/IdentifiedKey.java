@@ -19,15 +19,14 @@
 
 package pl.fratik.mcs.encryption;
 
-import com.google.common.base.Objects;
-import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
-import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.security.PublicKey;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -37,8 +36,8 @@ public class IdentifiedKey {
     private final PublicKey publicKey;
     private final byte[] signature;
     private final Instant expiryTemporal;
-    private @MonotonicNonNull Boolean isSignatureValid;
-    private @MonotonicNonNull UUID holder;
+    private Boolean isSignatureValid;
+    private UUID holder;
 
     public IdentifiedKey(byte[] keyBits, long expiry, byte[] signature) {
         this(EncryptionUtils.parseRsaPublicKey(keyBits), Instant.ofEpochMilli(expiry), signature);
@@ -143,9 +142,9 @@ public class IdentifiedKey {
 
         IdentifiedKey that = (IdentifiedKey) o;
 
-        return Objects.equal(this.getSignedPublicKey(), that.getSignedPublicKey())
-                && Objects.equal(this.getExpiryTemporal(), that.getExpiryTemporal())
+        return Objects.equals(this.getSignedPublicKey(), that.getSignedPublicKey())
+                && Objects.equals(this.getExpiryTemporal(), that.getExpiryTemporal())
                 && Arrays.equals(this.getSignature(), that.getSignature())
-                && Objects.equal(this.getSigner(), that.getSigner());
+                && Objects.equals(this.getSigner(), that.getSigner());
     }
 }
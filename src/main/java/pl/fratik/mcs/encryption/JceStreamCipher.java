@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encryption;
+
+import io.netty.buffer.ByteBuf;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+
+public class JceStreamCipher implements StreamCipher {
+    private final Cipher cipher;
+
+    public JceStreamCipher(Key key, boolean encrypt) throws GeneralSecurityException {
+        cipher = Cipher.getInstance("AES/CFB8/NoPadding");
+        cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, key, new IvParameterSpec(key.getEncoded()));
+    }
+
+    @Override
+    public void process(ByteBuf in, ByteBuf out) throws GeneralSecurityException {
+        // wersja z ByteBufferami działa dla heap i direct, bez pośrednich tablic
+        int len = in.readableBytes();
+        out.ensureWritable(len);
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), len);
+        ByteBuffer dst = out.nioBuffer(out.writerIndex(), len);
+        int written = cipher.update(src, dst);
+        in.skipBytes(len);
+        out.writerIndex(out.writerIndex() + written);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encryption;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.security.KeyPair;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Para kluczy RSA serwera (do szyfrowania logowania). Generowana w tle po otwarciu nasłuchu, a nie przy pierwszym
+ * połączeniu – generowanie zajmuje dziesiątki milisekund, a na słabej maszynie więcej.
+ */
+public class ServerKey {
+    private static volatile CompletableFuture<KeyPair> key;
+
+    private ServerKey() {}
+
+    /**
+     * Zaczyna generowanie klucza w tle, jeśli jeszcze się nie zaczęło.
+     */
+    public static void generateInBackground() {
+        future();
+    }
+
+    /**
+     * @return para kluczy; czeka, jeśli generowanie jeszcze trwa
+     */
+    public static KeyPair get() {
+        return future().join();
+    }
+
+    private static CompletableFuture<KeyPair> future() {
+        CompletableFuture<KeyPair> k = key;
+        if (k != null) return k;
+        synchronized (ServerKey.class) {
+            if (key == null) {
+                CompletableFuture<KeyPair> f = new CompletableFuture<>();
+                new DefaultThreadFactory("mcs-keygen", true).newThread(() -> {
+                    try {
+                        f.complete(EncryptionUtils.createRsaKeyPair(1024));
+                    } catch (Throwable t) {
+                        f.completeExceptionally(t);
+                    }
+                }).start();
+                key = f;
+            }
+            return key;
+        }
+    }
+}
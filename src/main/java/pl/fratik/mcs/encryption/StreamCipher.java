@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encryption;
+
+import io.netty.buffer.ByteBuf;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * AES/CFB8 używany do szyfrowania połączenia po zalogowaniu.
+ */
+public interface StreamCipher {
+    /**
+     * Szyfruje/deszyfruje wszystkie czytelne bajty z {@code in} prosto do {@code out}.
+     * Wyjście ma tę samą długość co wejście.
+     */
+    void process(ByteBuf in, ByteBuf out) throws GeneralSecurityException;
+}
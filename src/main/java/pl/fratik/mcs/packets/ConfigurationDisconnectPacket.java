@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.packets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import lombok.Data;
+import pl.fratik.mcs.ProtocolUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Disconnect w fazie konfiguracji. Od 1.20.3 komponent idzie jako NBT – zwykły tekst to pojedynczy tag String.
+ */
+@Data
+public class ConfigurationDisconnectPacket implements ResponsePacket {
+    private static final int TAG_STRING = 8;
+    private final String text;
+
+    @Override
+    public void encode(ByteBuf buf, int protVer) {
+        ProtocolUtil.writeVarInt(buf, 0x02);
+        buf.writeByte(TAG_STRING);
+        try (ByteBufOutputStream out = new ByteBufOutputStream(buf)) {
+            out.writeUTF(text); // NBT używa tego samego "zmodyfikowanego UTF-8" co DataOutput
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.packets;
+
+import io.netty.buffer.ByteBuf;
+import pl.fratik.mcs.chat.ChatComponent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gotowe pakiety rozłączenia dla stałych komunikatów.
+ * Klucz to instancja komponentu, więc komunikaty powinny być stałymi (komponenty są niezmienne).
+ */
+public class DisconnectCache {
+    // wersję wysyła klient, więc szybka ścieżka po wersji ma ograniczoną ilość wpisów na komunikat
+    static final int MAX_VERSIONS = 64;
+    private static final Map<ChatComponent, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private DisconnectCache() {}
+
+    /**
+     * @return pakiet rozłączenia razem z ramką długości
+     */
+    public static ByteBuf get(ChatComponent message, int protVer) {
+        Entry entry = CACHE.computeIfAbsent(message, m -> new Entry());
+        ByteBuf buf = entry.versions.get(protVer);
+        if (buf == null) {
+            // wersje różnią się tylko tym, czy przekraczają progi komponentu (np. klucz tłumaczenia vs tekst),
+            // więc zakodowanych pakietów jest tyle, ile różnych JSONów – niezależnie od tego, co wyśle klient
+            String json = message.serialize(protVer);
+            buf = entry.encodings.computeIfAbsent(json, j -> PreEncoded.frame(new DisconnectPacket(message, protVer), protVer));
+            if (entry.versions.size() < MAX_VERSIONS) entry.versions.putIfAbsent(protVer, buf);
+        }
+        return buf.retainedDuplicate();
+    }
+
+    static int encodings(ChatComponent message) {
+        Entry entry = CACHE.get(message);
+        return entry == null ? 0 : entry.encodings.size();
+    }
+
+    static int versions(ChatComponent message) {
+        Entry entry = CACHE.get(message);
+        return entry == null ? 0 : entry.versions.size();
+    }
+
+    private static class Entry {
+        private final Map<Integer, ByteBuf> versions = new ConcurrentHashMap<>();
+        private final Map<String, ByteBuf> encodings = new ConcurrentHashMap<>();
+    }
+}
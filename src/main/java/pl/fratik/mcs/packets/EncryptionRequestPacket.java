@@ -26,11 +26,6 @@ public class EncryptionRequestPacket implements ResponsePacket {
     private final byte[] publicKey;
     private final byte[] verifyToken;
 
-    @Override
-    public int calculateLength(int protVer) {
-        return 0;
-    }
-
     @Override
     public void encode(ByteBuf buf, int protVer) {
         ProtocolUtil.writeVarInt(buf, 0x01);
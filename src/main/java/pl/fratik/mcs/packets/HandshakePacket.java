@@ -17,12 +17,24 @@
 
 package pl.fratik.mcs.packets;
 
+import io.netty.buffer.ByteBuf;
 import lombok.Data;
+import pl.fratik.mcs.ProtocolUtil;
 
 @Data
-public class HandshakePacket {
+public class HandshakePacket implements ResponsePacket {
     private final int protVer;
     private final String ip;
     private final int port;
     private final int state;
+
+    // wysyłany tylko przez sondę gotowości serwera
+    @Override
+    public void encode(ByteBuf buf, int protVer) {
+        ProtocolUtil.writeVarInt(buf, 0x00);
+        ProtocolUtil.writeVarInt(buf, this.protVer);
+        ProtocolUtil.writeString(buf, ip);
+        buf.writeShort(port);
+        ProtocolUtil.writeVarInt(buf, state);
+    }
 }
@@ -26,11 +26,6 @@ import java.nio.charset.StandardCharsets;
 public class LegacyDisconnectPacket implements ResponsePacket {
     private final String text;
 
-    @Override
-    public int calculateLength(int protVer) {
-        return 3 + text.getBytes(StandardCharsets.UTF_16BE).length;
-    }
-
     @Override
     public void encode(ByteBuf buf, int protVer) {
         buf.writeByte(0xFF);
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.packets;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Data;
+import pl.fratik.mcs.ProtocolUtil;
+
+import java.util.UUID;
+
+/**
+ * Login Success w wersji dla 1.20.5+ (po nim klient przechodzi do fazy konfiguracji).
+ */
+@Data
+public class LoginSuccessPacket implements ResponsePacket {
+    private final UUID uuid;
+    private final String name;
+
+    @Override
+    public void encode(ByteBuf buf, int protVer) {
+        ProtocolUtil.writeVarInt(buf, 0x02);
+        ProtocolUtil.writeUUID(buf, uuid);
+        ProtocolUtil.writeString(buf, name);
+        ProtocolUtil.writeVarInt(buf, 0); // bez właściwości (skina ustawi prawdziwy serwer)
+        if (protVer >= 766 && protVer < 768) buf.writeBoolean(true); // strict error handling, tylko 1.20.5 – 1.21.1
+    }
+}
@@ -25,11 +25,6 @@ import pl.fratik.mcs.ProtocolUtil;
 public class PingResponsePacket implements ResponsePacket {
     private final long val;
 
-    @Override
-    public int calculateLength(int protVer) {
-        return 9;
-    }
-
     @Override
     public void encode(ByteBuf buf, int protVer) {
         ProtocolUtil.writeVarInt(buf, 0x01);
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.packets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import pl.fratik.mcs.ProtocolUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pakiety zakodowane raz, do wielokrotnego wysyłania przez {@link ByteBuf#retainedDuplicate()}.
+ */
+public class PreEncoded {
+    private PreEncoded() {}
+
+    /**
+     * @return pakiet razem z ramką długości
+     */
+    public static ByteBuf frame(ResponsePacket packet, int protVer) {
+        ByteBuf body = Unpooled.buffer();
+        try {
+            packet.encode(body, protVer);
+            ByteBuf framed = Unpooled.buffer(ProtocolUtil.MAX_VARINT_SIZE + body.readableBytes());
+            ProtocolUtil.writeVarInt(framed, body.readableBytes());
+            framed.writeBytes(body);
+            return seal(framed);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * @return pakiet bez ramki (protokół sprzed Netty)
+     */
+    public static ByteBuf raw(ResponsePacket packet) {
+        ByteBuf buf = Unpooled.buffer();
+        packet.encode(buf, -1);
+        return seal(buf);
+    }
+
+    private static ByteBuf seal(ByteBuf buf) {
+        // ByteBuffer z JDK, a nie bufor Netty – pamięć zwolni cleaner, gdy bufor przestanie być używany
+        ByteBuffer direct = ByteBuffer.allocateDirect(buf.readableBytes());
+        buf.readBytes(direct);
+        buf.release();
+        direct.flip();
+        return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(direct).asReadOnly());
+    }
+}
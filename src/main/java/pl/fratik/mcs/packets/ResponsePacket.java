@@ -20,6 +20,5 @@ package pl.fratik.mcs.packets;
 import io.netty.buffer.ByteBuf;
 
 public interface ResponsePacket {
-    @Deprecated int calculateLength(int protVer);
     void encode(ByteBuf buf, int protVer);
 }
@@ -17,8 +17,15 @@
 
 package pl.fratik.mcs.packets;
 
+import io.netty.buffer.ByteBuf;
 import lombok.Data;
+import pl.fratik.mcs.ProtocolUtil;
 
 @Data
-public class StatusRequestPacket {
+public class StatusRequestPacket implements ResponsePacket {
+    // wysyłany tylko przez sondę gotowości serwera
+    @Override
+    public void encode(ByteBuf buf, int protVer) {
+        ProtocolUtil.writeVarInt(buf, 0x00);
+    }
 }
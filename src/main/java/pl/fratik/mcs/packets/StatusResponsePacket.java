@@ -21,17 +21,10 @@ import io.netty.buffer.ByteBuf;
 import lombok.Data;
 import pl.fratik.mcs.ProtocolUtil;
 
-import java.nio.charset.StandardCharsets;
-
 @Data
 public class StatusResponsePacket implements ResponsePacket {
     private final String json;
 
-    @Override
-    public int calculateLength(int protVer) {
-        return 1 + json.getBytes(StandardCharsets.UTF_8).length;
-    }
-
     @Override
     public void encode(ByteBuf buf, int protVer) {
         ProtocolUtil.writeVarInt(buf, 0x00);
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.ratelimit;
+
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.McsConfig;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Limity nowych połączeń, zapytań o status i prób logowania – osobno na adres IP i na podsieć
+ * (/24 dla IPv4, /48 dla IPv6; pojedynczy adres IPv6 to jego prefiks /64).
+ */
+public class RateLimiter {
+    private final TokenBucketTable[] perIp;
+    private final TokenBucketTable[] perSubnet;
+
+    public RateLimiter(McsConfig config) {
+        int[] limits = new int[Kind.values().length];
+        limits[Kind.CONNECTION.ordinal()] = config.getRateLimitConnections();
+        limits[Kind.STATUS.ordinal()] = config.getRateLimitStatus();
+        limits[Kind.LOGIN.ordinal()] = config.getRateLimitLogins();
+        int factor = Math.max(1, config.getRateLimitSubnetFactor());
+        perIp = new TokenBucketTable[limits.length];
+        perSubnet = new TokenBucketTable[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            perIp[i] = new TokenBucketTable(config.getRateLimitTableSize(), limits[i]);
+            perSubnet[i] = new TokenBucketTable(config.getRateLimitTableSize(), limits[i] * factor);
+        }
+    }
+
+    public static RateLimiter get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return false jeśli adres (albo jego podsieć) przekroczył limit i połączenie trzeba porzucić
+     */
+    public static boolean allow(Kind kind, SocketAddress address) {
+        if (!Bootstrap.getConfig().isRateLimit() || !(address instanceof InetSocketAddress isa)) return true;
+        InetAddress addr = isa.getAddress();
+        if (addr == null) return true;
+        return get().tryAcquire(kind, addr);
+    }
+
+    public boolean tryAcquire(Kind kind, InetAddress address) {
+        byte[] b = address.getAddress();
+        long ip;
+        long subnet;
+        if (address instanceof Inet4Address) {
+            ip = 1L << 32 | (b[0] & 0xFFL) << 24 | (b[1] & 0xFFL) << 16 | (b[2] & 0xFFL) << 8 | b[3] & 0xFFL;
+            subnet = ip >>> 8;
+        } else {
+            ip = 0;
+            for (int i = 0; i < 8; i++) ip = ip << 8 | b[i] & 0xFFL;
+            subnet = ip >>> 16;
+        }
+        return perIp[kind.ordinal()].tryAcquire(ip) && perSubnet[kind.ordinal()].tryAcquire(subnet);
+    }
+
+    public enum Kind {
+        CONNECTION,
+        STATUS,
+        LOGIN
+    }
+
+    private static class Holder {
+        private static final RateLimiter INSTANCE = new RateLimiter(Bootstrap.getConfig());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.ratelimit;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.transport.ClientAddress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Terminy dla poszczególnych etapów połączenia i limit połączeń, które jeszcze się nie zakończyły.
+ * <p>
+ * Wszystkie kanały dzielą jeden {@link HashedWheelTimer} – dokładność do 100 ms w zupełności wystarcza,
+ * a jeden wątek i tablica kubełków kosztują mniej niż osobne zadanie w pętli zdarzeń każdego kanału.
+ */
+public class SessionGuard {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionGuard.class);
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(new DefaultThreadFactory("mcs-timer", true),
+            100, TimeUnit.MILLISECONDS, 64);
+    private static final AtomicInteger OPEN = new AtomicInteger();
+    private static final AttributeKey<Boolean> COUNTED = AttributeKey.valueOf("mcs-session-counted");
+
+    private SessionGuard() {}
+
+    /**
+     * Rejestruje nowe połączenie, jeśli nie przekroczy to limitu. Licznik zmniejsza się sam po zamknięciu kanału.
+     *
+     * @param max maksymalna liczba otwartych sesji, 0 = bez limitu
+     * @return false jeśli połączenie trzeba porzucić
+     */
+    public static boolean tryOpen(Channel channel, int max) {
+        if (max > 0) {
+            int open;
+            do {
+                open = OPEN.get();
+                if (open >= max) return false;
+            } while (!OPEN.compareAndSet(open, open + 1));
+        } else OPEN.incrementAndGet();
+        channel.attr(COUNTED).set(Boolean.TRUE);
+        channel.closeFuture().addListener(f -> release(channel));
+        return true;
+    }
+
+    /**
+     * Zwalnia miejsce kanału przed jego zamknięciem (np. gracz przeszedł do poczekalni). Kolejne wywołania,
+     * także to po zamknięciu kanału, nic nie robią.
+     */
+    public static void release(Channel channel) {
+        if (channel.attr(COUNTED).getAndSet(null) != null) OPEN.decrementAndGet();
+    }
+
+    public static int openSessions() {
+        return OPEN.get();
+    }
+
+    /**
+     * Zamyka kanał, jeśli termin upłynie przed anulowaniem zwróconego {@link Timeout}.
+     *
+     * @param phase nazwa etapu do logów
+     */
+    public static Timeout deadline(Channel channel, long millis, String phase) {
+        return TIMER.newTimeout(t -> {
+            if (!channel.isActive()) return;
+            LOGGER.debug("!X {}: przekroczono czas na {}", ClientAddress.of(channel), phase);
+            channel.close();
+        }, millis, TimeUnit.MILLISECONDS);
+    }
+}
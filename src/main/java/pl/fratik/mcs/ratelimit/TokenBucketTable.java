@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tablica kubełków z żetonami o stałym rozmiarze, bez blokad.
+ * <p>
+ * Każdy kubełek to jeden {@link AtomicLong} z teoretycznym czasem następnego żądania (GCRA) – pobranie żetonu
+ * to jeden CAS. Kubełek, którego czas minął, jest pełny, więc jego miejsce może przejąć inny klucz;
+ * dzięki temu pamięć nie rośnie z liczbą adresów.
+ */
+class TokenBucketTable {
+    private static final int PROBES = 4;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final int mask;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    /**
+     * @param size      liczba kubełków (zaokrąglana w górę do potęgi dwójki)
+     * @param perMinute ile żetonów przybywa na minutę; tyle też mieści się w kubełku
+     */
+    TokenBucketTable(int size, int perMinute) {
+        int capacity = Integer.highestOneBit(Math.max(PROBES, size - 1)) << 1;
+        buckets = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        intervalNanos = 60_000_000_000L / Math.max(1, perMinute);
+        burstNanos = intervalNanos * Math.max(1, perMinute);
+    }
+
+    boolean tryAcquire(long key) {
+        long now = System.nanoTime();
+        AtomicLong tat = find(key, now).tat;
+        while (true) {
+            long current = tat.get();
+            long next = (current - now < 0 ? now : current) + intervalNanos;
+            if (next - now > burstNanos) return false;
+            if (tat.compareAndSet(current, next)) return true;
+        }
+    }
+
+    private Bucket find(long key, long now) {
+        int start = mix(key) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            Bucket b = buckets.get((start + i) & mask);
+            if (b != null && b.key == key) return b;
+        }
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            Bucket b = buckets.get(slot);
+            if (b == null || b.tat.get() - now <= 0) {
+                Bucket fresh = new Bucket(key, now);
+                if (buckets.compareAndSet(slot, b, fresh)) return fresh;
+            }
+        }
+        // wszystkie miejsca zajęte przez aktywnych – ten klucz traci historię, ale limit na podsieć dalej działa
+        Bucket fresh = new Bucket(key, now);
+        buckets.set(start, fresh);
+        return fresh;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static class Bucket {
+        private final long key;
+        private final AtomicLong tat;
+
+        private Bucket(long key, long now) {
+            this.key = key;
+            this.tat = new AtomicLong(now);
+        }
+    }
+}
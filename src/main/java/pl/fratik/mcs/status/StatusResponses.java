@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.status;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import pl.fratik.mcs.packets.LegacyDisconnectPacket;
+import pl.fratik.mcs.packets.PingResponsePacket;
+import pl.fratik.mcs.packets.PreEncoded;
+import pl.fratik.mcs.packets.StatusResponsePacket;
+
+/**
+ * Gotowe (z ramką długości) odpowiedzi na status i pingi. Budowane raz, przy każdym pingu wysyłamy tylko duplikat.
+ */
+public class StatusResponses {
+    public static final String DEFAULT_STATUS = "{\"version\":{\"name\":\"Offline\",\"protocol\":-1}," +
+            "\"players\":{\"max\":1,\"online\":0},\"description\":{\"text\":\"Serwer jest offline\"}}";
+    private static final String LEGACY_PING = "§1\000127\000Offline\000Serwer jest offline\0000\0000";
+    private static final String LEGACY_HANDSHAKE = "Jestes na prehistorycznej wersji Minecrafta. Czemu?";
+
+    // bufory nie są zwalniane ręcznie: przy podmianie ktoś mógł właśnie wziąć duplikat starego, więc sprząta GC
+    private static volatile ByteBuf status = PreEncoded.frame(new StatusResponsePacket(DEFAULT_STATUS), -1);
+    private static final ByteBuf LEGACY_PING_BUF = PreEncoded.raw(new LegacyDisconnectPacket(LEGACY_PING));
+    private static final ByteBuf LEGACY_HANDSHAKE_BUF = PreEncoded.raw(new LegacyDisconnectPacket(LEGACY_HANDSHAKE));
+
+    private StatusResponses() {}
+
+    /**
+     * Podmienia odpowiedź na status (np. po wczytaniu snapshotu serwera).
+     */
+    public static void updateStatus(String json) {
+        status = PreEncoded.frame(new StatusResponsePacket(json), -1);
+    }
+
+    /**
+     * @return odpowiedź na status razem z ramką długości
+     */
+    public static ByteBuf status() {
+        return status.retainedDuplicate();
+    }
+
+    /**
+     * @return odpowiedź na legacy ping (bez ramki, protokół sprzed Netty)
+     */
+    public static ByteBuf legacyPing() {
+        return LEGACY_PING_BUF.retainedDuplicate();
+    }
+
+    public static ByteBuf legacyHandshake() {
+        return LEGACY_HANDSHAKE_BUF.retainedDuplicate();
+    }
+
+    /**
+     * @return odpowiedź na ping razem z ramką długości
+     */
+    public static ByteBuf pong(ByteBufAllocator alloc, long val) {
+        ByteBuf buf = alloc.buffer(10);
+        buf.writeByte(9);
+        new PingResponsePacket(val).encode(buf, -1);
+        return buf;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.status;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import lombok.Data;
+
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Stan serwera zapisywany przez plugin przy wyłączaniu, żeby MCS mógł pokazywać prawdziwą ikonę, MOTD i wersję.
+ */
+@Data
+public class StatusSnapshot {
+    public static final String FILE = "./mcs-status.json";
+
+    private String motd;
+    private String versionName;
+    private int protocol = -1;
+    private int maxPlayers;
+    private String favicon; // data:image/png;base64,... albo null
+
+    public static StatusSnapshot read() throws IOException {
+        try (Reader r = new FileReader(FILE)) {
+            return new Gson().fromJson(r, StatusSnapshot.class);
+        }
+    }
+
+    public void write() throws IOException {
+        try (Writer w = new FileWriter(FILE)) {
+            new Gson().toJson(this, w);
+        }
+    }
+
+    /**
+     * @param startupSeconds średni czas uruchamiania serwera (dopisywany jako druga linia MOTD), albo -1
+     * @return JSON odpowiedzi na status (Server List Ping) dla wyłączonego serwera
+     */
+    public String toStatusJson(int startupSeconds) {
+        JsonObject version = new JsonObject();
+        version.addProperty("name", versionName == null ? "Offline" : versionName);
+        version.addProperty("protocol", protocol);
+        JsonObject players = new JsonObject();
+        players.addProperty("max", maxPlayers);
+        players.addProperty("online", 0);
+        JsonObject description = new JsonObject();
+        String text = motd == null ? "Serwer jest offline" : motd;
+        // MOTD ma dwie linie – jeśli druga jest zajęta, nie dopisujemy
+        if (startupSeconds > 0 && text.indexOf('\n') == -1) text += "\n§7Uruchomienie zajmuje ok. " + startupSeconds + " s";
+        description.addProperty("text", text);
+        JsonObject status = new JsonObject();
+        status.add("version", version);
+        status.add("players", players);
+        status.add("description", description);
+        if (favicon != null) status.addProperty("favicon", favicon);
+        return status.toString();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.transport;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Adres klienta – za load balancerem ten z nagłówka PROXY, w przeciwnym razie adres gniazda.
+ */
+public class ClientAddress {
+    public static final AttributeKey<InetSocketAddress> REAL_ADDRESS = AttributeKey.valueOf("mcs-real-address");
+
+    private ClientAddress() {}
+
+    public static SocketAddress of(Channel channel) {
+        InetSocketAddress real = channel.attr(REAL_ADDRESS).get();
+        return real != null ? real : channel.remoteAddress();
+    }
+}
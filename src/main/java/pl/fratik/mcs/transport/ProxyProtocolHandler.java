@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.transport;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.haproxy.HAProxyCommand;
+import io.netty.handler.codec.haproxy.HAProxyMessage;
+import io.netty.handler.ipfilter.IpFilterRuleType;
+import io.netty.handler.ipfilter.IpSubnetFilterRule;
+import io.netty.util.NetUtil;
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.fratik.mcs.Bootstrap;
+import pl.fratik.mcs.ratelimit.RateLimiter;
+import pl.fratik.mcs.ratelimit.SessionGuard;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Odbiera nagłówek PROXY (v1/v2, dekodowany przez {@code HAProxyMessageDecoder}) i zapisuje prawdziwy adres klienta
+ * w {@link ClientAddress#REAL_ADDRESS}. Do tego czasu wstrzymuje {@code channelActive}, żeby dalsze handlery
+ * od początku widziały właściwy adres.
+ */
+public class ProxyProtocolHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProxyProtocolHandler.class);
+    private static volatile List<IpSubnetFilterRule> trusted = List.of();
+    private Timeout deadline;
+
+    /**
+     * Czy połączenie przyszło od zaufanego load balancera (lista {@code proxyProtocolTrusted} w configu).
+     * Reszta połączeń jest traktowana jak bezpośrednie – nikt spoza listy nie może podać cudzego adresu.
+     */
+    public static boolean isTrusted(SocketAddress address) {
+        if (!(address instanceof InetSocketAddress isa)) return false;
+        for (IpSubnetFilterRule rule : trusted) {
+            if (rule.matches(isa)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        int timeout = Bootstrap.getConfig().getHandshakeTimeoutMs();
+        if (timeout > 0) deadline = SessionGuard.deadline(ctx.channel(), timeout, "nagłówek PROXY");
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof HAProxyMessage pmsg)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        try {
+            // LOCAL to np. health check balancera – zostaje jego adres
+            if (pmsg.command() == HAProxyCommand.PROXY && pmsg.sourceAddress() != null) {
+                InetAddress addr = InetAddress.getByAddress(NetUtil.createByteArrayFromIpAddressString(pmsg.sourceAddress()));
+                ctx.channel().attr(ClientAddress.REAL_ADDRESS).set(new InetSocketAddress(addr, pmsg.sourcePort()));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("!X Nieprawidłowy adres w nagłówku PROXY od {}: {}", ctx.channel().remoteAddress(), pmsg.sourceAddress());
+            ctx.close();
+            return;
+        } finally {
+            pmsg.release();
+        }
+        if (deadline != null) deadline.cancel();
+        ctx.pipeline().remove(this);
+        if (!RateLimiter.allow(RateLimiter.Kind.CONNECTION, ClientAddress.of(ctx.channel()))) {
+            ctx.close();
+            return;
+        }
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (deadline != null) deadline.cancel();
+        ctx.fireChannelInactive();
+    }
+
+    /**
+     * Ustawia listę zaufanych adresów/podsieci (np. {@code 10.0.0.0/8}).
+     *
+     * @throws IllegalArgumentException jeśli któryś wpis nie jest adresem IP
+     */
+    public static void configure(List<String> entries) {
+        List<IpSubnetFilterRule> rules = new ArrayList<>();
+        for (String entry : entries) {
+            int slash = entry.indexOf('/');
+            String ip = slash == -1 ? entry : entry.substring(0, slash);
+            byte[] bytes = NetUtil.createByteArrayFromIpAddressString(ip);
+            if (bytes == null) throw new IllegalArgumentException("Nieprawidłowy adres: " + entry);
+            int cidr = slash == -1 ? bytes.length * 8 : Integer.parseInt(entry.substring(slash + 1));
+            rules.add(new IpSubnetFilterRule(ip, cidr, IpFilterRuleType.ACCEPT));
+        }
+        trusted = List.copyOf(rules);
+    }
+}
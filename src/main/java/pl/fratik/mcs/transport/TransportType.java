@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.transport;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.Getter;
+import pl.fratik.mcs.McsConfig;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiFunction;
+
+public enum TransportType {
+    NIO("NIO", NioServerSocketChannel.class, NioSocketChannel.class, NioEventLoopGroup::new),
+    EPOLL("epoll", EpollServerSocketChannel.class, EpollSocketChannel.class, EpollEventLoopGroup::new);
+
+    @Getter private final String name;
+    @Getter private final Class<? extends ServerChannel> serverChannelClass;
+    @Getter private final Class<? extends Channel> socketChannelClass; // połączenia wychodzące (tryb proxy)
+    private final BiFunction<Integer, ThreadFactory, EventLoopGroup> groupFactory;
+
+    TransportType(String name, Class<? extends ServerChannel> serverChannelClass, Class<? extends Channel> socketChannelClass,
+                  BiFunction<Integer, ThreadFactory, EventLoopGroup> groupFactory) {
+        this.name = name;
+        this.serverChannelClass = serverChannelClass;
+        this.socketChannelClass = socketChannelClass;
+        this.groupFactory = groupFactory;
+    }
+
+    public EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return groupFactory.apply(threads, threadFactory);
+    }
+
+    /**
+     * Czy transport pozwala na kilka akceptorów na jednym porcie (SO_REUSEPORT).
+     */
+    public boolean supportsReusePort() {
+        return this == EPOLL;
+    }
+
+    /**
+     * Ustawia opcje specyficzne dla transportu (SO_REUSEPORT, TCP_DEFER_ACCEPT, TCP_FASTOPEN).
+     */
+    public void applyOptions(ServerBootstrap b, McsConfig config) {
+        if (this != EPOLL) return;
+        if (config.getAcceptorThreads() > 1) b.option(EpollChannelOption.SO_REUSEPORT, true);
+        // handshake przychodzi od razu po połączeniu – nie budź pętli dla pustych połączeń
+        if (config.getTcpDeferAccept() > 0) b.option(EpollChannelOption.TCP_DEFER_ACCEPT, config.getTcpDeferAccept());
+        if (config.getTcpFastOpen() > 0) b.option(EpollChannelOption.TCP_FASTOPEN, config.getTcpFastOpen());
+    }
+
+    public static TransportType select(String preferred) {
+        String pref = preferred == null ? "auto" : preferred.toLowerCase(Locale.ROOT);
+        return switch (pref) {
+            case "nio" -> NIO;
+            case "epoll" -> {
+                if (!Epoll.isAvailable()) throw new IllegalStateException("epoll nie jest dostępny", Epoll.unavailabilityCause());
+                yield EPOLL;
+            }
+            case "auto" -> Epoll.isAvailable() ? EPOLL : NIO;
+            default -> throw new IllegalArgumentException("Nieznany transport: " + preferred);
+        };
+    }
+}
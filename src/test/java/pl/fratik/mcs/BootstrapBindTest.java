@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pl.fratik.mcs.transport.TransportType;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BootstrapBindTest {
+    @ParameterizedTest
+    @EnumSource(TransportType.class)
+    void retriesUntilPortIsReleased(TransportType transport) throws Exception {
+        assumeTrue(transport != TransportType.EPOLL || Epoll.isAvailable(), "epoll niedostępny");
+        EventLoopGroup group = transport.createEventLoopGroup(1, new DefaultThreadFactory("mcs-bind-test"));
+        ChannelGroup channels = new DefaultChannelGroup("mcs-bind-test", GlobalEventExecutor.INSTANCE);
+        try {
+            ServerBootstrap b = new ServerBootstrap()
+                    .group(group)
+                    .channel(transport.getServerChannelClass())
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {}
+                    });
+            ServerSocket holder = new ServerSocket(0);
+            int port = holder.getLocalPort();
+            CompletableFuture<Void> bound = CompletableFuture.runAsync(() -> {
+                try {
+                    Bootstrap.bind(b, port, 1, channels);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // kilka nieudanych prób, zanim port się zwolni
+            Thread.sleep(1200);
+            assertFalse(bound.isDone(), "bind nie powinien się udać ani poddać, gdy port jest zajęty");
+            holder.close();
+            bound.get(5, TimeUnit.SECONDS);
+            assertEquals(1, channels.size());
+            assertEquals(port, ((InetSocketAddress) channels.iterator().next().localAddress()).getPort());
+        } finally {
+            channels.close().sync();
+            group.shutdownGracefully().sync();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtocolUtilTest {
+    private static final int[] BOUNDARIES = {0, 1, 127, 128, 255, 16383, 16384, (1 << 21) - 1, 1 << 21,
+            (1 << 28) - 1, 1 << 28, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+    @Test
+    void varIntGoldenBytes() {
+        assertArrayEquals(bytes(0x00), writeVarInt(0));
+        assertArrayEquals(bytes(0x7F), writeVarInt(127));
+        assertArrayEquals(bytes(0x80, 0x01), writeVarInt(128));
+        assertArrayEquals(bytes(0xFF, 0x7F), writeVarInt(16383));
+        assertArrayEquals(bytes(0x80, 0x80, 0x01), writeVarInt(16384));
+        assertArrayEquals(bytes(0xFF, 0xFF, 0x7F), writeVarInt((1 << 21) - 1));
+        assertArrayEquals(bytes(0x80, 0x80, 0x80, 0x80, 0x01), writeVarInt(1 << 28));
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), writeVarInt(-1));
+        assertArrayEquals(bytes(0x80, 0x80, 0x80, 0x80, 0x08), writeVarInt(Integer.MIN_VALUE));
+    }
+
+    @Test
+    void varIntMatchesOldCodec() {
+        Random random = new Random(0);
+        int[] values = new int[BOUNDARIES.length + 10_000];
+        System.arraycopy(BOUNDARIES, 0, values, 0, BOUNDARIES.length);
+        for (int i = BOUNDARIES.length; i < values.length; i++) values[i] = random.nextInt() >> random.nextInt(32);
+        for (int value : values) {
+            byte[] encoded = writeVarInt(value);
+            assertArrayEquals(oldWriteVarInt(value), encoded, "zapis " + value);
+            assertEquals(encoded.length, ProtocolUtil.varIntBytes(value), "varIntBytes " + value);
+            ByteBuf buf = Unpooled.wrappedBuffer(encoded);
+            assertEquals(encoded.length, ProtocolUtil.varIntSize(buf), "varIntSize " + value);
+            assertEquals(value, ProtocolUtil.readVarInt(buf), "odczyt " + value);
+            assertFalse(buf.isReadable());
+        }
+    }
+
+    @Test
+    void varIntSizeWaitsForIncompleteData() {
+        assertEquals(0, ProtocolUtil.varIntSize(Unpooled.EMPTY_BUFFER));
+        assertEquals(0, ProtocolUtil.varIntSize(Unpooled.wrappedBuffer(bytes(0x80, 0x80))));
+    }
+
+    @Test
+    void varIntLongerThanFiveBytesIsRejected() {
+        byte[] tooLong = bytes(0x80, 0x80, 0x80, 0x80, 0x80, 0x01);
+        assertThrows(CorruptedFrameException.class, () -> ProtocolUtil.readVarInt(Unpooled.wrappedBuffer(tooLong)));
+        assertThrows(CorruptedFrameException.class, () -> ProtocolUtil.varIntSize(Unpooled.wrappedBuffer(tooLong)));
+    }
+
+    @Test
+    void varLongMatchesOldCodec() {
+        long[] values = {0, 127, 128, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        for (long value : values) {
+            ByteBuf buf = Unpooled.buffer();
+            ProtocolUtil.writeVarLong(buf, value);
+            assertArrayEquals(oldWriteVarLong(value), ByteBufUtil.getBytes(buf), "zapis " + value);
+            assertEquals(value, ProtocolUtil.readVarLong(buf), "odczyt " + value);
+        }
+    }
+
+    @Test
+    void asciiStringMatchesOldCodec() {
+        String s = "fratik_123";
+        ByteBuf buf = Unpooled.buffer();
+        ProtocolUtil.writeString(buf, s);
+        assertArrayEquals(oldWriteString(s), ByteBufUtil.getBytes(buf));
+        assertEquals(s, ProtocolUtil.readString(buf));
+    }
+
+    @Test
+    void multiByteStringIsPrefixedWithUtf8Length() {
+        String s = "zażółć §a 😀";
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        ByteBuf buf = Unpooled.buffer();
+        ProtocolUtil.writeString(buf, s);
+        // stary kodek zapisywał tu ilość znaków UTF-16, przez co klient czytał za krótki string
+        assertEquals(utf8.length, ProtocolUtil.readVarInt(buf.duplicate()));
+        assertEquals(ProtocolUtil.varIntBytes(utf8.length) + utf8.length, buf.readableBytes());
+        assertEquals(s, ProtocolUtil.readString(buf));
+    }
+
+    @Test
+    void stringLongerThanMaxLengthIsRejected() {
+        ByteBuf buf = Unpooled.buffer();
+        ProtocolUtil.writeString(buf, "x".repeat(17));
+        assertThrows(CorruptedFrameException.class, () -> ProtocolUtil.readString(buf.duplicate(), 16));
+        assertEquals("x".repeat(17), ProtocolUtil.readString(buf.duplicate(), 17));
+
+        // długość w bajtach sprawdzana przed dekodowaniem, bez patrzenia na resztę danych
+        ByteBuf huge = Unpooled.buffer();
+        ProtocolUtil.writeVarInt(huge, 16 * 3 + 1);
+        assertThrows(CorruptedFrameException.class, () -> ProtocolUtil.readString(huge, 16));
+
+        ByteBuf truncated = Unpooled.buffer();
+        ProtocolUtil.writeVarInt(truncated, 10);
+        truncated.writeBytes(bytes('a', 'b'));
+        assertThrows(CorruptedFrameException.class, () -> ProtocolUtil.readString(truncated, 16));
+    }
+
+    private static byte[] writeVarInt(int value) {
+        ByteBuf buf = Unpooled.buffer();
+        ProtocolUtil.writeVarInt(buf, value);
+        return ByteBufUtil.getBytes(buf);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] arr = new byte[values.length];
+        for (int i = 0; i < values.length; i++) arr[i] = (byte) values[i];
+        return arr;
+    }
+
+    // kodek sprzed przepisania ProtocolUtil, jako wzorzec zgodności
+    private static byte[] oldWriteVarInt(int value) {
+        ByteBuf buf = Unpooled.buffer();
+        while (true) {
+            if ((value & ~0x7F) == 0) {
+                buf.writeByte(value);
+                return ByteBufUtil.getBytes(buf);
+            }
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+    }
+
+    private static byte[] oldWriteVarLong(long value) {
+        ByteBuf buf = Unpooled.buffer();
+        while (true) {
+            if ((value & ~((long) 0x7F)) == 0) {
+                buf.writeByte((int) value);
+                return ByteBufUtil.getBytes(buf);
+            }
+            buf.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+    }
+
+    private static byte[] oldWriteString(String s) {
+        ByteBuf buf = Unpooled.wrappedBuffer(oldWriteVarInt(s.length()), s.getBytes(StandardCharsets.UTF_8));
+        return ByteBufUtil.getBytes(buf);
+    }
+}
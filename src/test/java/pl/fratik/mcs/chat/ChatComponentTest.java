@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.chat;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class ChatComponentTest {
+    // wszystko, co Gson i StringEscapeUtils traktują inaczej: cudzysłów, backslash, znaki kontrolne, HTML, DEL,
+    // polskie znaki, §, separator linii i para surogatów
+    private static final String TRICKY = "a\"b\\c\n\t\r\b\f\u0001\u001b<>&='\u007f zażółć §c \u2028\u2029 😀";
+    private static final String KEY = "multiplayer.disconnect.not_whitelisted";
+
+    @Test
+    void textMatchesOldGsonSerialization() {
+        JsonObject expected = new JsonObject();
+        expected.addProperty("text", TRICKY);
+        assertEquals(old(expected), new TextChatComponent(TRICKY).serialize(760));
+    }
+
+    @Test
+    void styledTextMatchesOldGsonSerialization() {
+        JsonObject expected = new JsonObject();
+        expected.addProperty("text", "x");
+        expected.addProperty("bold", true);
+        expected.addProperty("strikethrough", true);
+        expected.addProperty("color", "12");
+        TextChatComponent component = new TextChatComponent("x").withColor(12).withBold(true).withStrikethrough(true);
+        assertEquals(old(expected), component.serialize(760));
+    }
+
+    @Test
+    void translateMatchesOldGsonSerialization() {
+        TranslateChatComponent component = new TranslateChatComponent(KEY,
+                new ChatComponent[] {new TextChatComponent(TRICKY)}, "Brak na liście: %s", 393);
+
+        JsonObject arg = new JsonObject();
+        arg.addProperty("text", TRICKY);
+        JsonArray with = new JsonArray();
+        with.add(arg);
+        JsonObject expected = new JsonObject();
+        expected.addProperty("translate", KEY);
+        expected.add("with", with);
+        assertEquals(old(expected), component.serialize(393));
+
+        JsonObject fallback = new JsonObject();
+        fallback.addProperty("text", "Brak na liście: %s");
+        assertEquals(old(fallback), component.serialize(340));
+    }
+
+    @Test
+    void stylingKeepsTranslation() {
+        TranslateChatComponent component = new TranslateChatComponent(KEY, null, "Brak na liście", 393)
+                .withColor(4).withBold(true);
+        assertInstanceOf(TranslateChatComponent.class, component);
+
+        JsonObject expected = new JsonObject();
+        expected.addProperty("bold", true);
+        expected.addProperty("color", "4");
+        expected.addProperty("translate", KEY);
+        assertEquals(old(expected), component.serialize(393));
+        assertEquals("§4§lBrak na liście", component.serializeLegacy());
+    }
+
+    // serializacja sprzed przepisania komponentów: JsonElement.toString() i escapowanie z DisconnectPacket
+    private static String old(JsonObject obj) {
+        String str = obj.toString();
+        StringWriter out = new StringWriter(str.length() * 2);
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch > 0xfff) {
+                out.write("\\u" + hex(ch));
+            } else if (ch > 0xff) {
+                out.write("\\u0" + hex(ch));
+            } else if (ch > 0x7f) {
+                out.write("\\u00" + hex(ch));
+            } else if (ch < 32) {
+                switch (ch) {
+                    case '\b' -> out.write("\\b");
+                    case '\n' -> out.write("\\n");
+                    case '\t' -> out.write("\\t");
+                    case '\f' -> out.write("\\f");
+                    case '\r' -> out.write("\\r");
+                    default -> out.write((ch > 0xf ? "\\u00" : "\\u000") + hex(ch));
+                }
+            } else out.write(ch);
+        }
+        return out.toString();
+    }
+
+    private static String hex(int codepoint) {
+        return Integer.toHexString(codepoint).toUpperCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.encryption;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class JceStreamCipherTest {
+    // kawałki różnej długości – stan rejestru musi przechodzić między wywołaniami process()
+    private static final int[] CHUNKS = {1, 15, 16, 17, 1000, 4096};
+
+    private final SecretKeySpec key;
+    private final byte[] data;
+
+    JceStreamCipherTest() {
+        Random random = new Random(0);
+        byte[] secret = new byte[16];
+        random.nextBytes(secret);
+        key = new SecretKeySpec(secret, "AES");
+        data = new byte[total()];
+        random.nextBytes(data);
+    }
+
+    @Test
+    void matchesOneShotJceCipher() throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/CFB8/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(key.getEncoded()));
+        byte[] expected = cipher.doFinal(data);
+        assertArrayEquals(expected, process(new JceStreamCipher(key, true), data, false));
+        assertArrayEquals(expected, process(new JceStreamCipher(key, true), data, true));
+    }
+
+    @Test
+    void matchesCfb8BuiltOnAesBlocks() throws GeneralSecurityException {
+        // CFB8 z protokołu: IV = sekret, każdy bajt to jedno szyfrowanie 16-bajtowego rejestru
+        Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding");
+        ecb.init(Cipher.ENCRYPT_MODE, key);
+        byte[] register = key.getEncoded();
+        byte[] expected = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            byte[] keystream = ecb.doFinal(register);
+            expected[i] = (byte) (data[i] ^ keystream[0]);
+            System.arraycopy(register, 1, register, 0, register.length - 1);
+            register[register.length - 1] = expected[i];
+        }
+        assertArrayEquals(expected, process(new JceStreamCipher(key, true), data, false));
+    }
+
+    @Test
+    void decryptionRestoresInput() throws GeneralSecurityException {
+        byte[] encrypted = process(new JceStreamCipher(key, true), data, true);
+        assertArrayEquals(data, process(new JceStreamCipher(key, false), encrypted, false));
+        assertArrayEquals(data, process(new JceStreamCipher(key, false), encrypted, true));
+    }
+
+    private static byte[] process(StreamCipher cipher, byte[] input, boolean direct) throws GeneralSecurityException {
+        ByteBuf out = direct ? Unpooled.directBuffer() : Unpooled.buffer();
+        int off = 0;
+        for (int chunk : CHUNKS) {
+            ByteBuf in = direct ? Unpooled.directBuffer(chunk) : Unpooled.buffer(chunk);
+            in.writeBytes(input, off, chunk);
+            cipher.process(in, out);
+            assertFalse(in.isReadable());
+            off += chunk;
+        }
+        return ByteBufUtil.getBytes(out);
+    }
+
+    private static int total() {
+        int total = 0;
+        for (int chunk : CHUNKS) total += chunk;
+        return total;
+    }
+}
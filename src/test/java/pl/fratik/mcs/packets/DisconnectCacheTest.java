@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs.packets;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+import pl.fratik.mcs.chat.ChatComponent;
+import pl.fratik.mcs.chat.TranslateChatComponent;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DisconnectCacheTest {
+    private static final ChatComponent MESSAGE =
+            new TranslateChatComponent("multiplayer.disconnect.not_whitelisted", null, "Nie jesteś na białej liście!", 393);
+
+    @Test
+    void outOfRangeVersionsDoNotGrowCache() {
+        // po jednej wersji z każdej strony progu – to jedyne dwa różne pakiety
+        release(DisconnectCache.get(MESSAGE, 340));
+        release(DisconnectCache.get(MESSAGE, 763));
+        assertEquals(2, DisconnectCache.encodings(MESSAGE));
+
+        long directBefore = directBuffers();
+        for (int round = 0; round < 3; round++) {
+            for (int v = 100_000; v < 101_000; v++) release(DisconnectCache.get(MESSAGE, v));
+            for (int v = -1; v > -1000; v--) release(DisconnectCache.get(MESSAGE, v));
+        }
+        assertEquals(2, DisconnectCache.encodings(MESSAGE));
+        assertTrue(DisconnectCache.versions(MESSAGE) <= DisconnectCache.MAX_VERSIONS);
+        assertEquals(directBefore, directBuffers());
+    }
+
+    @Test
+    void sameJsonSharesPacket() {
+        ByteBuf a = DisconnectCache.get(MESSAGE, 763);
+        ByteBuf b = DisconnectCache.get(MESSAGE, 200_000);
+        try {
+            assertEquals(a, b);
+        } finally {
+            release(a);
+            release(b);
+        }
+    }
+
+    private static void release(ByteBuf buf) {
+        buf.release();
+    }
+
+    private static long directBuffers() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals("direct")) return pool.getCount();
+        throw new IllegalStateException("brak puli direct");
+    }
+}
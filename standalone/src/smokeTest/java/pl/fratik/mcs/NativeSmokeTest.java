@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023 fratik
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package pl.fratik.mcs;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import pl.fratik.mcs.packets.HandshakePacket;
+import pl.fratik.mcs.packets.PreEncoded;
+import pl.fratik.mcs.packets.ResponsePacket;
+import pl.fratik.mcs.packets.StatusRequestPacket;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+/**
+ * Uruchamia natywną binarkę MCS'a w katalogu tymczasowym i sprawdza status, ping i początek logowania.
+ * Uruchamianie: {@code ./gradlew nativeSmokeTest}
+ */
+public class NativeSmokeTest {
+    private static final int PROTOCOL = 765; // 1.20.4
+    private static final int TIMEOUT_MS = 2000;
+    private static final long START_TIMEOUT_MS = 10_000;
+    private static final String WAKES = "{\"wakes\":[{\"at\":1,\"portBoundMs\":20000,\"firstStatusMs\":42000}]}";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) throw new IllegalArgumentException("Użycie: NativeSmokeTest <ścieżka do binarki>");
+        File dir = Files.createTempDirectory("mcs-smoke").toFile();
+        int port;
+        try (ServerSocket s = new ServerSocket(0)) {
+            port = s.getLocalPort();
+        }
+        Files.writeString(new File(dir, "server.properties").toPath(), "server-port=" + port + "\nonline-mode=true\n");
+        // historia wybudzeń zapisana wcześniej – binarka musi ją wczytać (Gson + refleksja) i pokazać w MOTD
+        File wakes = new File(dir, "mcs-wakes.json");
+        Files.writeString(wakes.toPath(), WAKES);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(new File(args[0]).getAbsolutePath()).directory(dir).inheritIO().start();
+        try {
+            awaitListening(address, process);
+            System.out.printf("Nasłuch po %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            // historia jest czytana tuż po bind(), pierwszy status może ją jeszcze wyprzedzić
+            for (int attempt = 1; !status(address); attempt++) {
+                if (attempt == 5) throw new AssertionError("Status bez czasu z historii wybudzeń");
+                Thread.sleep(200);
+            }
+            login(address);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+        if (!Files.readString(wakes.toPath()).contains("\"firstStatusMs\":42000"))
+            throw new AssertionError("Historia wybudzeń została nadpisana");
+        System.out.println("Binarka natywna przeszła test");
+    }
+
+    private static void awaitListening(InetSocketAddress address, Process process) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MS;
+        while (true) {
+            if (!process.isAlive()) throw new AssertionError("Binarka zakończyła się z kodem " + process.exitValue());
+            try (Socket socket = new Socket()) {
+                socket.connect(address, TIMEOUT_MS);
+                return;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw new AssertionError("Binarka nie nasłuchuje po " + START_TIMEOUT_MS + " ms");
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    /**
+     * @return czy MOTD zawiera czas uruchomienia z zapisanej historii wybudzeń
+     */
+    private static boolean status(InetSocketAddress address) throws IOException {
+        try (Socket socket = connect(address)) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            write(out, new HandshakePacket(PROTOCOL, address.getHostString(), address.getPort(), 1));
+            write(out, new StatusRequestPacket());
+            ByteBuf response = read(in, 0x00);
+            String json = ProtocolUtil.readString(response);
+            if (!json.contains("\"version\"")) throw new AssertionError("Odpowiedź na status bez wersji: " + json);
+            System.out.println("Status: " + json);
+
+            long payload = System.nanoTime();
+            write(out, (buf, v) -> {
+                ProtocolUtil.writeVarInt(buf, 0x01);
+                buf.writeLong(payload);
+            });
+            if (read(in, 0x01).readLong() != payload) throw new AssertionError("Pong z innym payloadem niż ping");
+            System.out.println("Ping: OK");
+            return json.contains("ok. 42 s");
+        }
+    }
+
+    private static void login(InetSocketAddress address) throws IOException {
+        try (Socket socket = connect(address)) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            write(out, new HandshakePacket(PROTOCOL, address.getHostString(), address.getPort(), 2));
+            write(out, (buf, v) -> {
+                ProtocolUtil.writeVarInt(buf, 0x00);
+                ProtocolUtil.writeString(buf, "mcs_smoke");
+                ProtocolUtil.writeUUID(buf, UUID.nameUUIDFromBytes("mcs_smoke".getBytes(StandardCharsets.UTF_8)));
+            });
+            // online-mode: serwer musi odpowiedzieć prośbą o szyfrowanie z kluczem publicznym
+            ByteBuf request = read(in, 0x01);
+            ProtocolUtil.readString(request); // server id
+            if (ProtocolUtil.readByteArray(request, 512).length == 0) throw new AssertionError("Pusty klucz publiczny");
+            System.out.println("Logowanie: OK (encryption request)");
+        }
+    }
+
+    private static Socket connect(InetSocketAddress address) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(address, TIMEOUT_MS);
+        socket.setSoTimeout(TIMEOUT_MS);
+        return socket;
+    }
+
+    private static void write(OutputStream out, ResponsePacket packet) throws IOException {
+        ByteBuf frame = PreEncoded.frame(packet, PROTOCOL);
+        frame.getBytes(frame.readerIndex(), out, frame.readableBytes());
+        out.flush();
+    }
+
+    private static ByteBuf read(DataInputStream in, int expectedId) throws IOException {
+        byte[] body = new byte[readVarInt(in)];
+        in.readFully(body);
+        ByteBuf buf = Unpooled.wrappedBuffer(body);
+        int id = ProtocolUtil.readVarInt(buf);
+        if (id != expectedId) throw new AssertionError(String.format("Pakiet 0x%02X zamiast 0x%02X", id, expectedId));
+        return buf;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int i = 0; i < ProtocolUtil.MAX_VARINT_SIZE; i++) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << (i * 7);
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("VarInt za długi");
+    }
+}